@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Strategy;
+
+import java.io.IOException;
+
+@Configuration
+public class LogbookConfig {
+
+    // Logbook буферизует тела целиком ради логирования; для потоковых NDJSON-ответов
+    // и массовых NDJSON-загрузок это сводит потоковую обработку на нет, поэтому их логируем без тела
+    @Bean
+    public Strategy logbookStrategy() {
+        return new Strategy() {
+            @Override
+            public HttpRequest process(HttpRequest request) throws IOException {
+                String contentType = request.getContentType();
+                return contentType != null && contentType.contains(MediaType.APPLICATION_NDJSON_VALUE)
+                        ? request.withoutBody()
+                        : request.withBody();
+            }
+
+            @Override
+            public HttpResponse process(HttpRequest request, HttpResponse response) throws IOException {
+                return accepts(request, MediaType.APPLICATION_NDJSON_VALUE)
+                        ? response.withoutBody()
+                        : response.withBody();
+            }
+        };
+    }
+
+    private static boolean accepts(HttpRequest request, String mediaType) {
+        String accept = request.getHeaders().getFirst("Accept");
+        return accept != null && accept.contains(mediaType);
+    }
+}
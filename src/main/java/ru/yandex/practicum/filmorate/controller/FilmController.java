@@ -2,14 +2,25 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.storage.dal.dto.FilmDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.FilmImportResultDto;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -21,9 +32,13 @@ import java.util.stream.Collectors;
 public class FilmController {
 
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final NdjsonWriter ndjsonWriter;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, FilmImportService filmImportService, NdjsonWriter ndjsonWriter) {
         this.filmService = filmService;
+        this.filmImportService = filmImportService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @GetMapping("/director/{directorId}")
@@ -57,6 +72,13 @@ public class FilmController {
         return FilmDto.toDto(savedFilm);
     }
 
+    // Тело — NDJSON, по фильму на строку; ответ — результат по каждой непустой строке
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public List<FilmImportResultDto> importFilms(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        return filmImportService.importFilms(reader);
+    }
+
     @PutMapping
     public FilmDto updateFilm(@Valid @RequestBody FilmDto filmDto) {
         Film film = FilmDto.fromDto(filmDto);
@@ -65,10 +87,30 @@ public class FilmController {
     }
 
     @GetMapping
-    public Collection<FilmDto> getFilms() {
-        return filmService.getFilms().stream()
+    public ResponseEntity<Collection<FilmDto>> getFilms(
+            @RequestParam(required = false) @Positive Integer limit,
+            @RequestParam(required = false) String after) {
+        // Без limit — прежнее поведение: весь каталог одним списком
+        if (limit == null) {
+            return ResponseEntity.ok(filmService.getFilms().stream()
+                    .map(FilmDto::toDto)
+                    .collect(Collectors.toList()));
+        }
+
+        Page<Film> page = filmService.getFilmsPage(after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems().stream()
                 .map(FilmDto::toDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+    }
+
+    // Accept: application/x-ndjson — каталог пишется в ответ по одному фильму на строку по мере чтения из БД
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamFilms() {
+        return ndjsonWriter.<FilmDto>stream(line -> filmService.streamFilms(film -> line.accept(FilmDto.toDto(film))));
     }
 
     @GetMapping("/{id}")
@@ -101,6 +143,29 @@ public class FilmController {
         filmService.removeLike(id, userId);
     }
 
+    @GetMapping("/{id}/similar")
+    public List<FilmDto> getSimilarFilms(
+            @PathVariable int id,
+            @RequestParam(defaultValue = "10") @Positive int count) {
+        return filmService.getSimilarFilms(id, count).stream()
+                .map(FilmDto::toDto)
+                .collect(Collectors.toList());
+    }
+
+    // Лайки фильма — id пользователей по возрастанию; курсор следующей страницы в X-Next-Cursor
+    @GetMapping("/{id}/likes")
+    public ResponseEntity<List<Integer>> getLikes(
+            @PathVariable int id,
+            @RequestParam(defaultValue = "100") @Positive int limit,
+            @RequestParam(required = false) String after) {
+        Page<Integer> page = filmService.getFilmLikes(id, after, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
     @GetMapping("/popular")
     public List<FilmDto> getPopularFilms(
             @RequestParam(defaultValue = "10") @Min(0) int count,
@@ -10,6 +10,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exception.BadRequestException;
 import org.springframework.web.method.annotation.HandlerMethodValidationException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
 import ru.yandex.practicum.filmorate.model.ErrorResponse;
 
 import java.util.Map;
@@ -26,6 +27,16 @@ class GlobalControllerExceptionHandler {
         );
     }
 
+    @ExceptionHandler(ServiceUnavailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleServiceUnavailableException(ServiceUnavailableException e) {
+        log.warn("Service unavailable: {}", e.getMessage());
+        return Map.of(
+                "error", "Service unavailable",
+                "message", e.getMessage()
+        );
+    }
+
     @ExceptionHandler({MethodArgumentNotValidException.class, HandlerMethodValidationException.class})
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public ResponseEntity<Map<String, String>> handleValidException(Exception e) {
@@ -1,8 +1,11 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.PositiveOrZero;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.service.ReviewService;
 import ru.yandex.practicum.filmorate.storage.dal.dto.ReviewDto;
@@ -46,15 +49,19 @@ public class ReviewController {
         return ReviewDto.fromModel(review);
     }
 
+    // count — размер страницы (0 — пустой список, как до пагинации), after — курсор из заголовка X-Next-Cursor
     @GetMapping
-    public List<ReviewDto> getReviews(@RequestParam(required = false) Integer filmId,
-                                      @RequestParam(defaultValue = "10") int count) {
-        List<Review> reviews = (filmId == null)
-                ? reviewService.getAllReviews(count)
-                : reviewService.getReviewsByFilmId(filmId, count);
-        return reviews.stream()
+    public ResponseEntity<List<ReviewDto>> getReviews(@RequestParam(required = false) Integer filmId,
+                                                      @RequestParam(defaultValue = "10") @PositiveOrZero int count,
+                                                      @RequestParam(required = false) String after) {
+        Page<Review> page = reviewService.getReviewsPage(filmId, after, count);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems().stream()
                 .map(ReviewDto::fromModel)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     @PutMapping("/{id}/like/{userId}")
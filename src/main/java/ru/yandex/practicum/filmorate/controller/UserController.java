@@ -1,22 +1,26 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Positive;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 import ru.yandex.practicum.filmorate.storage.dal.dto.FeedDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.FeedWriterStatsDto;
 import ru.yandex.practicum.filmorate.storage.dal.dto.FilmDto;
 import ru.yandex.practicum.filmorate.storage.dal.dto.FriendshipDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.RecommendationCacheStatsDto;
 import ru.yandex.practicum.filmorate.storage.dal.dto.UserDto;
 
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -24,9 +28,11 @@ import java.util.stream.Collectors;
 public class UserController {
 
     private final UserService userService;
+    private final NdjsonWriter ndjsonWriter;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, NdjsonWriter ndjsonWriter) {
         this.userService = userService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @PostMapping
@@ -41,10 +47,32 @@ public class UserController {
     }
 
     @GetMapping
-    public List<UserDto> getUsers() {
-        return userService.getUsers().stream()
+    public ResponseEntity<List<UserDto>> getUsers(
+            @RequestParam(required = false) @Positive Integer limit,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "true") boolean friends) {
+        // Без limit — прежнее поведение: все пользователи одним списком.
+        // friends=false — без списков друзей, поле friends в ответе не выводится
+        if (limit == null) {
+            return ResponseEntity.ok(userService.getUsers(friends).stream()
+                    .map(UserDto::fromModel)
+                    .collect(Collectors.toList()));
+        }
+
+        Page<User> page = userService.getUsersPage(after, limit, friends);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(Page.NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems().stream()
                 .map(UserDto::fromModel)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
+    }
+
+    // Accept: application/x-ndjson — пользователи пишутся в ответ по одному на строку по мере чтения из БД
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        return ndjsonWriter.<UserDto>stream(line -> userService.streamUsers(user -> line.accept(UserDto.fromModel(user))));
     }
 
     @DeleteMapping("/{userId}")
@@ -76,14 +104,7 @@ public class UserController {
     @GetMapping("/{id}/friends")
     public List<UserDto> getFriends(@PathVariable int id) {
         return userService.getFriends(id).stream()
-                .map(friendship -> {
-                    int friendId = (friendship.getRequesterId() == id)
-                            ? friendship.getAddresseeId()
-                            : friendship.getRequesterId();
-                    return userService.getUserById(friendId);
-                })
-                .map((Optional<User> user) -> UserDto.fromModel(user.get()))
-                .sorted(Comparator.comparingInt(UserDto::getId))
+                .map(UserDto::fromModel)
                 .collect(Collectors.toList());
     }
 
@@ -94,6 +115,15 @@ public class UserController {
                 .collect(Collectors.toList());
     }
 
+    // Друзья друзей по убыванию числа общих друзей
+    @GetMapping("/{id}/friends/suggestions")
+    public List<UserDto> getFriendSuggestions(@PathVariable int id,
+                                              @RequestParam(defaultValue = "10") @Positive int count) {
+        return userService.getFriendSuggestions(id, count).stream()
+                .map(UserDto::fromModel)
+                .collect(Collectors.toList());
+    }
+
     @GetMapping("/{id}/recommendations")
     public List<FilmDto> getRecommendations(@PathVariable int id) {
         return userService.getRecommendations(id).stream()
@@ -101,8 +131,34 @@ public class UserController {
                 .collect(Collectors.toList());
     }
 
+    // Метрики кеша рекомендаций: попадания, промахи, вытеснения — для подбора размера и TTL
+    @GetMapping("/recommendations/cache")
+    public RecommendationCacheStatsDto getRecommendationCacheStats() {
+        return userService.getRecommendationCacheStats();
+    }
+
+    // События друзей пользователя — последние limit по возрастанию eventId
+    @GetMapping("/{id}/timeline")
+    public Collection<FeedDto> getTimeline(@PathVariable int id,
+                                           @RequestParam(defaultValue = "50") @Positive int limit) {
+        return FeedDto.fromModel(userService.getTimeline(id, limit));
+    }
+
+    // Метрики отложенной записи ленты: глубина очереди, время и число пакетных записей
+    @GetMapping("/feed/writer")
+    public FeedWriterStatsDto getFeedWriterStats() {
+        return userService.getFeedWriterStats();
+    }
+
     @GetMapping("/{id}/feed")
-    public Collection<FeedDto> getFeed(@PathVariable int id) {
-        return FeedDto.fromModel(userService.getFeed(id));
+    public Collection<FeedDto> getFeed(@PathVariable int id,
+                                       @RequestParam(required = false) @Positive Integer limit,
+                                       @RequestParam(required = false) Integer before) {
+        // Без limit — вся лента, как раньше. С limit — последние события до before;
+        // следующая страница запрашивается с before = eventId первого события текущей
+        if (limit == null) {
+            return FeedDto.fromModel(userService.getFeed(id));
+        }
+        return FeedDto.fromModel(userService.getFeedPage(id, before, limit));
     }
 }
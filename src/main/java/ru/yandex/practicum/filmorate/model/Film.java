@@ -24,7 +24,8 @@ public class Film {
 
     @Positive(message = "Продолжительность фильма должна быть положительным числом")
     private int duration;
-    private Set<Integer> likes = new HashSet<>();
+    // При чтении заполняется только счётчик; сами лайки — через постраничный GET /films/{id}/likes
+    private int likeCount;
     @NotNull(message = "У фильма не может не быть жанра")
     private Set<Genre> genres = new HashSet<>();
     @NotNull(message = "У фильма не может не быть МРА")
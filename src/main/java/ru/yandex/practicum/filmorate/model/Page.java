@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Страница keyset-пагинации: элементы и непрозрачный курсор следующей страницы (null — страниц больше нет)
+@Data
+@AllArgsConstructor
+public class Page<T> {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private List<T> items;
+    private String nextCursor;
+
+    // Обрезает выборку, запрошенную с запасом в один элемент, и строит курсор по последнему элементу страницы
+    public static <T> Page<T> of(List<T> fetched, int limit, CursorKey<T> cursorKey) {
+        if (fetched.size() <= limit) {
+            return new Page<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, limit);
+        return new Page<>(items, encodeCursor(cursorKey.of(items.get(limit - 1))));
+    }
+
+    public static String encodeCursor(int... key) {
+        String raw = Arrays.stream(key)
+                .mapToObj(String::valueOf)
+                .collect(Collectors.joining(":"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static int[] decodeCursor(String cursor, int size) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int[] key = Arrays.stream(raw.split(":"))
+                    .mapToInt(Integer::parseInt)
+                    .toArray();
+            if (key.length != size) {
+                throw new IllegalArgumentException("Неверная длина курсора");
+            }
+            return key;
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Некорректный курсор пагинации: " + cursor);
+        }
+    }
+
+    @FunctionalInterface
+    public interface CursorKey<T> {
+        int[] of(T item);
+    }
+}
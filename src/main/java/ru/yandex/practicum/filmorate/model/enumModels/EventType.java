@@ -5,6 +5,15 @@ public enum EventType {
     REVIEW,
     FRIEND;
 
+    public static EventType fromId(int id) {
+        return switch (id) {
+            case 1 -> LIKE;
+            case 2 -> REVIEW;
+            case 3 -> FRIEND;
+            default -> throw new IllegalArgumentException("Неизвестный id EventType: " + id);
+        };
+    }
+
     public int getId() {
         return switch (this) {
             case LIKE -> 1;
@@ -5,6 +5,15 @@ public enum Operation {
     ADD,
     UPDATE;
 
+    public static Operation fromId(int id) {
+        return switch (id) {
+            case 1 -> REMOVE;
+            case 2 -> ADD;
+            case 3 -> UPDATE;
+            default -> throw new IllegalArgumentException("Неизвестный id Operation: " + id);
+        };
+    }
+
     public int getId() {
         return switch (this) {
             case REMOVE -> 1;
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+
+// Публикуется при создании, изменении и удалении режиссёра; для REMOVE director == null
+@Data
+@AllArgsConstructor
+public class DirectorEvent {
+    private int directorId;
+    private Director director;
+    private Operation operation;
+}
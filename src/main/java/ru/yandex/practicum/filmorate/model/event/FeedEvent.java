@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.enumModels.EventType;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+
+import java.time.LocalDateTime;
+
+// Событие ленты пользователя; публикуется в транзакции операции, в БД пишется после её фиксации
+@Data
+@AllArgsConstructor
+public class FeedEvent {
+    private int userId;
+    private int entityId;
+    private EventType eventType;
+    private Operation operation;
+    private LocalDateTime timestamp;
+
+    public static FeedEvent of(int userId, int entityId, EventType eventType, Operation operation) {
+        return new FeedEvent(userId, entityId, eventType, operation, LocalDateTime.now());
+    }
+}
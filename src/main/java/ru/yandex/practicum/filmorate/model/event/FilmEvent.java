@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+
+// Публикуется при создании, изменении и удалении фильма; для REMOVE film == null,
+// а likerIds — кто лайкал фильм до удаления (их лайки удаляются без отдельных LikeEvent)
+@Data
+@AllArgsConstructor
+public class FilmEvent {
+    private static final int[] NO_LIKERS = new int[0];
+
+    private int filmId;
+    private Film film;
+    private Operation operation;
+    private int[] likerIds;
+
+    public FilmEvent(int filmId, Film film, Operation operation) {
+        this(filmId, film, operation, NO_LIKERS);
+    }
+}
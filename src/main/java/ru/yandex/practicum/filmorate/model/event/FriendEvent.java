@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+
+// Публикуется после фактического добавления или удаления строки requester_id -> addressee_id в friends
+@Data
+@AllArgsConstructor
+public class FriendEvent {
+    private int requesterId;
+    private int addresseeId;
+    private Operation operation;
+}
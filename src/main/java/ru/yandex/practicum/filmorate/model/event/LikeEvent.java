@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+
+// Публикуется после фактического добавления или удаления строки в likes
+@Data
+@AllArgsConstructor
+public class LikeEvent {
+    private int filmId;
+    private int userId;
+    private Operation operation;
+}
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+
+// Публикуется после создания или удаления пользователя
+@Data
+@AllArgsConstructor
+public class UserEvent {
+    private int userId;
+    private Operation operation;
+}
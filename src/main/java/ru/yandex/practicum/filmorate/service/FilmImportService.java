@@ -0,0 +1,173 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.dal.dto.DirectorDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.FilmDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.FilmImportResultDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.GenreDto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Массовый импорт фильмов из NDJSON: строки читаются потоком, проверяются по одной,
+// а вставляются порциями по chunkSize — каждая порция в своей транзакции
+@Service
+@Slf4j
+public class FilmImportService {
+
+    private final FilmDbStorage filmDbStorage;
+    private final ReferenceDataCache referenceData;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public FilmImportService(FilmDbStorage filmDbStorage, ReferenceDataCache referenceData,
+                             ObjectMapper objectMapper, Validator validator,
+                             @Value("${filmorate.import.chunk-size:1000}") int chunkSize) {
+        this.filmDbStorage = filmDbStorage;
+        this.referenceData = referenceData;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    public List<FilmImportResultDto> importFilms(BufferedReader reader) throws IOException {
+        long start = System.currentTimeMillis();
+        List<FilmImportResultDto> results = new ArrayList<>();
+        List<PendingFilm> chunk = new ArrayList<>(chunkSize);
+
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(new PendingFilm(lineNumber, parse(line)));
+            } catch (IllegalArgumentException e) {
+                results.add(FilmImportResultDto.failed(lineNumber, e.getMessage()));
+            }
+            if (chunk.size() == chunkSize) {
+                saveChunk(chunk, results);
+                chunk.clear();
+            }
+        }
+        saveChunk(chunk, results);
+
+        results.sort(Comparator.comparingInt(FilmImportResultDto::getLine));
+        long created = results.stream().filter(result -> result.getId() != null).count();
+        log.info("Импорт фильмов: строк {}, добавлено {}, с ошибками {}, {} мс",
+                results.size(), created, results.size() - created, System.currentTimeMillis() - start);
+        return results;
+    }
+
+    // Разбор и проверка строки без обращения к БД: JSON, ограничения FilmDto, жанры и MPA по справочникам
+    private Film parse(String line) {
+        FilmDto dto;
+        try {
+            dto = objectMapper.readValue(line, FilmDto.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Некорректный JSON: " + e.getOriginalMessage());
+        }
+
+        Set<ConstraintViolation<FilmDto>> violations;
+        try {
+            violations = validator.validate(dto);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Некорректные данные фильма");
+        }
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+
+        Film film = new Film();
+        film.setName(dto.getName());
+        film.setDescription(dto.getDescription());
+        film.setReleaseDate(dto.getReleaseDate());
+        film.setDuration(dto.getDuration());
+        Mpa mpa = referenceData.findMpa(dto.getMpa().getId())
+                .orElseThrow(() -> new IllegalArgumentException("Рейтинг с id=" + dto.getMpa().getId() + " не существует"));
+        film.setMpa(mpa);
+
+        Set<Genre> genres = new HashSet<>();
+        for (GenreDto genreDto : dto.getGenres()) {
+            genres.add(referenceData.findGenre(genreDto.getId())
+                    .orElseThrow(() -> new IllegalArgumentException("Жанр с id=" + genreDto.getId() + " не существует")));
+        }
+        film.setGenres(genres);
+        film.setDirectors(dto.getDirectors() == null ? new HashSet<>() : dto.getDirectors().stream()
+                .map(DirectorDto::toModel)
+                .collect(Collectors.toSet()));
+        return film;
+    }
+
+    // Режиссёры всей порции проверяются одним запросом, затем оставшиеся фильмы вставляются пакетом
+    private void saveChunk(List<PendingFilm> chunk, List<FilmImportResultDto> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Integer> directorIds = chunk.stream()
+                .flatMap(pending -> pending.film.getDirectors().stream())
+                .map(Director::getDirectorId)
+                .collect(Collectors.toSet());
+        Map<Integer, Director> directors = directorIds.isEmpty()
+                ? Map.of()
+                : filmDbStorage.getDirectorsByIds(directorIds);
+
+        List<PendingFilm> valid = new ArrayList<>(chunk.size());
+        for (PendingFilm pending : chunk) {
+            Optional<Integer> unknown = pending.film.getDirectors().stream()
+                    .map(Director::getDirectorId)
+                    .filter(id -> !directors.containsKey(id))
+                    .findFirst();
+            if (unknown.isPresent()) {
+                results.add(FilmImportResultDto.failed(pending.line,
+                        "Режиссёр с id=" + unknown.get() + " не существует"));
+                continue;
+            }
+            pending.film.setDirectors(pending.film.getDirectors().stream()
+                    .map(director -> directors.get(director.getDirectorId()))
+                    .collect(Collectors.toSet()));
+            valid.add(pending);
+        }
+
+        try {
+            filmDbStorage.addFilms(valid.stream().map(pending -> pending.film).toList());
+            valid.forEach(pending -> results.add(FilmImportResultDto.created(pending.line, pending.film.getId())));
+        } catch (DataAccessException e) {
+            // Порция откатилась целиком; остальные порции импортируются дальше
+            log.warn("Порция импорта из {} фильмов не сохранена: {}", valid.size(), e.getMessage());
+            valid.forEach(pending -> results.add(FilmImportResultDto.failed(pending.line,
+                    "Ошибка сохранения порции: " + e.getMostSpecificCause().getMessage())));
+        }
+    }
+
+    private static final class PendingFilm {
+        private final int line;
+        private final Film film;
+
+        private PendingFilm(int line, Film film) {
+            this.line = line;
+            this.film = film;
+        }
+    }
+}
@@ -8,10 +8,17 @@ import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.model.Page;
+import ru.yandex.practicum.filmorate.storage.cache.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.cache.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.cache.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dal.FeedWriter;
 import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,10 +27,25 @@ public class FilmService {
 
     private final FilmDbStorage filmDbStorage;
     private final UserDbStorage userDbStorage;
-
-    public FilmService(FilmDbStorage filmDbStorage, UserDbStorage userDbStorage) {
+    private final PopularFilmsLeaderboard leaderboard;
+    private final ReferenceDataCache referenceData;
+    private final FilmSearchIndex searchIndex;
+    private final LikeIndex likeIndex;
+    private final FilmSimilarityService similarityService;
+    private final FeedWriter feedWriter;
+
+    public FilmService(FilmDbStorage filmDbStorage, UserDbStorage userDbStorage,
+                       PopularFilmsLeaderboard leaderboard, ReferenceDataCache referenceData,
+                       FilmSearchIndex searchIndex, LikeIndex likeIndex,
+                       FilmSimilarityService similarityService, FeedWriter feedWriter) {
         this.filmDbStorage = filmDbStorage;
         this.userDbStorage = userDbStorage;
+        this.leaderboard = leaderboard;
+        this.referenceData = referenceData;
+        this.searchIndex = searchIndex;
+        this.likeIndex = likeIndex;
+        this.similarityService = similarityService;
+        this.feedWriter = feedWriter;
     }
 
     public Film addFilm(Film film) {
@@ -33,7 +55,7 @@ public class FilmService {
     }
 
     public Film updateFilm(Film newFilm) {
-        getExsitsFilm(newFilm.getId());
+        checkFilmExists(newFilm.getId());
         Film updatedFilm = filmDbStorage.updateFilm(newFilm);
         log.info("Изменен объект в коллекции(films), теперь новый объект: {}", updatedFilm);
         return updatedFilm;
@@ -44,6 +66,19 @@ public class FilmService {
         return filmDbStorage.getFilms();
     }
 
+    public void streamFilms(Consumer<Film> consumer) {
+        log.info("Запрошена потоковая выгрузка фильмов");
+        filmDbStorage.forEachFilm(consumer);
+    }
+
+    public Page<Film> getFilmsPage(String after, int limit) {
+        int afterId = after == null ? 0 : Page.decodeCursor(after, 1)[0];
+        Page<Film> page = Page.of(filmDbStorage.getFilmsPage(afterId, limit + 1), limit,
+                film -> new int[]{film.getId()});
+        log.info("Получена страница фильмов после id={}, размер: {}", afterId, page.getItems().size());
+        return page;
+    }
+
     private Optional<Film> getExsitsFilm(int filmId) {
         Optional<Film> film = filmDbStorage.findFilmById(filmId);
         if (film.isPresent()) {
@@ -59,20 +94,53 @@ public class FilmService {
         return getExsitsFilm(id);
     }
 
+    // Проверки только существования — без загрузки сущностей
+    private void checkFilmExists(int filmId) {
+        if (!filmDbStorage.existsFilm(filmId)) {
+            log.error("Фильм с id={} не найден", filmId);
+            throw new NotFoundException("Фильм с id=" + filmId + " не найден");
+        }
+    }
+
+    private void checkUserExists(int userId) {
+        if (!userDbStorage.existsUser(userId)) {
+            log.error("Пользователь с id={} не найден", userId);
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
+    }
+
     public void addLike(int filmId, int userId) {
-        userDbStorage.findUserById(userId);
-        getExsitsFilm(filmId);
+        checkUserExists(userId);
+        checkFilmExists(filmId);
+        feedWriter.awaitCapacity();
         filmDbStorage.addLike(filmId, userId);
         log.info("Пользователь с id={} поставил лайк фильму с id={}", userId, filmId);
     }
 
     public void removeLike(int filmId, int userId) {
-        userDbStorage.findUserById(userId);
-        getExsitsFilm(filmId);
+        checkUserExists(userId);
+        checkFilmExists(filmId);
+        feedWriter.awaitCapacity();
         filmDbStorage.removeLike(filmId, userId);
         log.info("Пользователь с id={} удалил лайк с фильма с id={}", userId, filmId);
     }
 
+    public List<Film> getSimilarFilms(int filmId, int count) {
+        checkFilmExists(filmId);
+        List<Film> films = filmDbStorage.getFilmsInOrder(similarityService.getSimilarFilmIds(filmId, count));
+        log.info("Получены похожие фильмы для фильма с id={}: {} шт.", filmId, films.size());
+        return films;
+    }
+
+    public Page<Integer> getFilmLikes(int filmId, String after, int limit) {
+        checkFilmExists(filmId);
+        int afterUserId = after == null ? 0 : Page.decodeCursor(after, 1)[0];
+        Page<Integer> page = Page.of(filmDbStorage.getLikesPage(filmId, afterUserId, limit + 1), limit,
+                userId -> new int[]{userId});
+        log.info("Получена страница лайков фильма с id={}: {} шт.", filmId, page.getItems().size());
+        return page;
+    }
+
     public List<Film> getPopularFilms(int count, int genreId, int year) {
         if (year < 1895 && year != 0) {
             throw new BadRequestException("Год выхода фильма не может быть ранее 1895 года");
@@ -81,31 +149,36 @@ public class FilmService {
             getGenreById(genreId);
         }
 
-        List<Film> popularFilms = filmDbStorage.getPopularFilms(count, genreId, year);
+        // Порядок берём из рейтинга в памяти, в БД идём только за самими фильмами;
+        // если count больше поддерживаемого K — считаем по like_count в БД
+        Optional<List<Integer>> topIds = leaderboard.getTop(count, genreId, year);
+        List<Film> popularFilms = topIds.isPresent()
+                ? filmDbStorage.getFilmsInOrder(topIds.get())
+                : filmDbStorage.getPopularFilms(count, genreId, year);
         log.info("Получены популярные фильмы: {}", popularFilms);
         return popularFilms;
     }
 
-    public Set<Genre> getGenres() {
-        Set<Genre> genres = filmDbStorage.getGenres();
+    public List<Genre> getGenres() {
+        List<Genre> genres = referenceData.getGenres();
         log.info("Получены жанры: {}", genres);
         return genres;
     }
 
     public Genre getGenreById(int id) {
-        Genre genre = filmDbStorage.getGenreById(id).get();
+        Genre genre = referenceData.getGenre(id);
         log.info("Получен жанр по id={}: {}", id, genre);
         return genre;
     }
 
-    public Set<Mpa> getMpas() {
-        Set<Mpa> mpas = filmDbStorage.getMpas();
+    public List<Mpa> getMpas() {
+        List<Mpa> mpas = referenceData.getMpas();
         log.info("Получены рейтинги: {}", mpas);
         return mpas;
     }
 
     public Mpa getMpaById(int id) {
-        Mpa mpa = filmDbStorage.getMpaById(id).get();
+        Mpa mpa = referenceData.getMpa(id);
         log.info("Получен рейтинг по id={}: {}", id, mpa);
         return mpa;
     }
@@ -116,7 +189,11 @@ public class FilmService {
         boolean searchByTitle = by.contains("title");
         boolean searchByDirector = by.contains("director");
 
-        if (searchByTitle && searchByDirector) {
+        Optional<Set<Integer>> indexed = searchIndex.search(query, searchByTitle, searchByDirector);
+        if (indexed.isPresent()) {
+            List<Integer> filmIds = indexed.get().stream().sorted().toList();
+            result = filmDbStorage.getFilmsInOrder(filmIds);
+        } else if (searchByTitle && searchByDirector) {
             result = filmDbStorage.searchByTitleAndDirector(query);
         } else if (searchByTitle) {
             result = filmDbStorage.searchByTitle(query);
@@ -127,7 +204,7 @@ public class FilmService {
         log.info("Получен фильма с подстрокой = '{}', поиск по {}", query, by);
 
         return result.stream()
-                .sorted(Comparator.comparing((Film f) -> f.getLikes().size()).reversed())
+                .sorted(Comparator.comparingInt(Film::getLikeCount).reversed())
                 .collect(Collectors.toList());
     }
 
@@ -174,7 +251,18 @@ public class FilmService {
     }
 
     public List<Film> getCommonFilmsSortedByPopularity(int userId, int friendId) {
-        if (userDbStorage.findUserById(userId).isPresent() && userDbStorage.findUserById(friendId).isPresent()) {
+        if (userDbStorage.existsUser(userId) && userDbStorage.existsUser(friendId)) {
+            // Быстрый путь: пересечение лайков в памяти и ранжирование по счётчикам рейтинга
+            Optional<int[]> common = likeIndex.getCommonFilms(userId, friendId);
+            if (common.isPresent() && leaderboard.isReady()) {
+                List<Integer> ranked = Arrays.stream(common.get())
+                        .boxed()
+                        .sorted(Comparator.comparingInt((Integer filmId) -> leaderboard.getLikeCount(filmId))
+                                .reversed()
+                                .thenComparingInt(filmId -> filmId))
+                        .toList();
+                return filmDbStorage.getFilmsInOrder(ranked);
+            }
             return filmDbStorage.getCommonFilmsSortedByPopularity(userId, friendId);
         } else {
             throw new NotFoundException("Данные пользователи не найдены!");
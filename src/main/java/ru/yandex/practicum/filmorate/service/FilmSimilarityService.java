@@ -0,0 +1,277 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.FilmSimilarity;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.cache.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.dal.FilmSimilarityDbStorage;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+// Фоновый расчёт матрицы похожих фильмов: косинусная мера по совместным лайкам,
+// top-N соседей на фильм. Первый запуск считает все фильмы, дальше — инкрементально.
+// Лайк фильма X меняет только пары (Y, X): сам X пересчитывается целиком, а в top-N остальных фильмов
+// вписывается новая оценка X — без пересчёта их соседства. Целиком пересчитывается лишь фильм,
+// у которого X был в top-N и оценка упала (на его место нужен следующий кандидат), и фильмы, потерявшие
+// соседа при удалении фильма. Если затронутых фильмов больше max-incremental-films, выполняется полный расчёт.
+// Копия top-N всех фильмов держится в памяти. Расчёт идёт в ForkJoinPool на все ядра
+@Service
+@Slf4j
+public class FilmSimilarityService {
+
+    // Лучшие первыми: выше оценка, при равенстве — меньший id
+    private static final Comparator<FilmSimilarity> BEST_FIRST = Comparator
+            .comparingDouble(FilmSimilarity::getScore).reversed()
+            .thenComparingInt(FilmSimilarity::getSimilarFilmId);
+    private static final FilmSimilarity[] EMPTY = new FilmSimilarity[0];
+
+    private final LikeIndex likeIndex;
+    private final FilmSimilarityDbStorage similarityStorage;
+    private final int neighbours;
+    private final int maxIncrementalFilms;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Фильм -> пользователи, чей лайк этого фильма изменился с прошлого запуска
+    private final Map<Integer, Set<Integer>> pendingLikes = new HashMap<>();
+    // Удалённый фильм -> кто его лайкал
+    private final Map<Integer, int[]> pendingRemovals = new HashMap<>();
+    // Текущие top-N по фильмам, лучшие первыми; меняется только в refresh
+    private final Map<Integer, FilmSimilarity[]> topByFilm = new HashMap<>();
+    private volatile boolean built;
+
+    public FilmSimilarityService(LikeIndex likeIndex, FilmSimilarityDbStorage similarityStorage,
+                                 @Value("${filmorate.similarity.neighbours:20}") int neighbours,
+                                 @Value("${filmorate.similarity.max-incremental-films:1000}") int maxIncrementalFilms) {
+        this.likeIndex = likeIndex;
+        this.similarityStorage = similarityStorage;
+        this.neighbours = neighbours;
+        this.maxIncrementalFilms = maxIncrementalFilms;
+    }
+
+    public List<Integer> getSimilarFilmIds(int filmId, int count) {
+        return similarityStorage.getSimilarFilmIds(filmId, count);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLike(LikeEvent event) {
+        synchronized (pendingLikes) {
+            pendingLikes.computeIfAbsent(event.getFilmId(), k -> new HashSet<>()).add(event.getUserId());
+        }
+    }
+
+    // Строки удалённого фильма убраны каскадом; фильмы, у которых он был в top-N, ищутся среди фильмов его лайкнувших
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        if (event.getOperation() != Operation.REMOVE) {
+            return;
+        }
+        synchronized (pendingLikes) {
+            pendingLikes.remove(event.getFilmId());
+            pendingRemovals.put(event.getFilmId(), event.getLikerIds());
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.similarity.initial-delay-ms:5000}",
+            fixedDelayString = "${filmorate.similarity.refresh-interval-ms:60000}")
+    public synchronized void refresh() {
+        if (!likeIndex.isReady()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Map<Integer, Set<Integer>> likes;
+        Map<Integer, int[]> removals;
+        synchronized (pendingLikes) {
+            // Лайки, пришедшие во время полного расчёта, попадут в следующий инкрементальный
+            likes = new HashMap<>(pendingLikes);
+            removals = new HashMap<>(pendingRemovals);
+            pendingLikes.clear();
+            pendingRemovals.clear();
+        }
+        if (!built) {
+            rebuild(start, "первый запуск");
+            return;
+        }
+        if (likes.isEmpty() && removals.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> recompute = new HashSet<>();
+        Map<Integer, FilmSimilarity[]> patched = new HashMap<>();
+        removals.forEach((filmId, likerIds) -> {
+            topByFilm.remove(filmId);
+            for (int userId : likerIds) {
+                for (int otherFilmId : likeIndex.getFilmsLikedBy(userId)) {
+                    if (indexOf(topByFilm.getOrDefault(otherFilmId, EMPTY), filmId) >= 0) {
+                        recompute.add(otherFilmId);
+                    }
+                }
+            }
+        });
+        likes.forEach((filmId, userIds) -> {
+            recompute.add(filmId);
+            patchPairs(filmId, userIds, recompute, patched);
+        });
+        recompute.removeAll(removals.keySet());
+        patched.keySet().removeAll(recompute);
+        patched.keySet().removeAll(removals.keySet());
+
+        if (recompute.size() + patched.size() > maxIncrementalFilms) {
+            rebuild(start, "затронуто фильмов " + (recompute.size() + patched.size()));
+            return;
+        }
+
+        List<Integer> recomputedIds = new ArrayList<>(recompute);
+        List<FilmSimilarity> rows = new ArrayList<>(compute(recomputedIds));
+        recomputedIds.forEach(topByFilm::remove);
+        remember(rows);
+        patched.forEach((filmId, top) -> {
+            topByFilm.put(filmId, top);
+            rows.addAll(Arrays.asList(top));
+        });
+        Set<Integer> written = new HashSet<>(recompute);
+        written.addAll(patched.keySet());
+        similarityStorage.replace(written, rows);
+        log.info("Матрица похожих фильмов обновлена: лайкнутых фильмов {}, удалённых {}, пересчитано {}, " +
+                        "поправлено {}, пар {}, {} мс", likes.size(), removals.size(), recompute.size(),
+                patched.size(), rows.size(), System.currentTimeMillis() - start);
+    }
+
+    private void rebuild(long start, String reason) {
+        List<Integer> filmIds = new ArrayList<>(likeIndex.getLikedFilms());
+        List<FilmSimilarity> rows = compute(filmIds);
+        similarityStorage.replaceAll(rows);
+        topByFilm.clear();
+        remember(rows);
+        built = true;
+        log.info("Матрица похожих фильмов пересчитана полностью ({}): фильмов {}, пар {}, потоков {}, {} мс",
+                reason, filmIds.size(), rows.size(), pool.getParallelism(), System.currentTimeMillis() - start);
+    }
+
+    // Лайки userIds фильма filmId изменили оценки пар (Y, filmId) — для фильмов с общими лайкнувшими
+    // и для фильмов самих userIds (после снятия лайка общих лайкнувших могло не остаться)
+    private void patchPairs(int filmId, Set<Integer> userIds, Set<Integer> recompute,
+                            Map<Integer, FilmSimilarity[]> patched) {
+        int[] likers = likeIndex.getUsersWhoLiked(filmId);
+        Map<Integer, Integer> coLikes = coLikes(filmId, likers);
+        Set<Integer> candidates = new HashSet<>(coLikes.keySet());
+        for (int userId : userIds) {
+            for (int otherFilmId : likeIndex.getFilmsLikedBy(userId)) {
+                candidates.add(otherFilmId);
+            }
+        }
+        candidates.remove(filmId);
+
+        for (int otherFilmId : candidates) {
+            if (recompute.contains(otherFilmId)) {
+                continue;
+            }
+            int common = coLikes.getOrDefault(otherFilmId, 0);
+            double score = common == 0 ? 0
+                    : score(common, likeIndex.getUsersWhoLiked(otherFilmId).length, likers.length);
+            FilmSimilarity[] top = patched.getOrDefault(otherFilmId, topByFilm.getOrDefault(otherFilmId, EMPTY));
+            int position = indexOf(top, filmId);
+            if (position >= 0) {
+                if (score < top[position].getScore()) {
+                    // Место filmId может занять фильм за пределами top-N — его знает только полный пересчёт
+                    recompute.add(otherFilmId);
+                } else if (score > top[position].getScore()) {
+                    FilmSimilarity[] updated = top.clone();
+                    updated[position] = new FilmSimilarity(otherFilmId, filmId, score);
+                    Arrays.sort(updated, BEST_FIRST);
+                    patched.put(otherFilmId, updated);
+                }
+            } else if (score > 0) {
+                FilmSimilarity candidate = new FilmSimilarity(otherFilmId, filmId, score);
+                if (top.length < neighbours || BEST_FIRST.compare(candidate, top[top.length - 1]) < 0) {
+                    FilmSimilarity[] updated = Arrays.copyOf(top, top.length + 1);
+                    updated[top.length] = candidate;
+                    Arrays.sort(updated, BEST_FIRST);
+                    patched.put(otherFilmId, Arrays.copyOf(updated, Math.min(updated.length, neighbours)));
+                }
+            }
+        }
+    }
+
+    private void remember(List<FilmSimilarity> rows) {
+        Map<Integer, List<FilmSimilarity>> byFilm = new HashMap<>();
+        for (FilmSimilarity row : rows) {
+            byFilm.computeIfAbsent(row.getFilmId(), k -> new ArrayList<>()).add(row);
+        }
+        byFilm.forEach((filmId, top) -> {
+            FilmSimilarity[] sorted = top.toArray(EMPTY);
+            Arrays.sort(sorted, BEST_FIRST);
+            topByFilm.put(filmId, sorted);
+        });
+    }
+
+    private static int indexOf(FilmSimilarity[] top, int similarFilmId) {
+        for (int i = 0; i < top.length; i++) {
+            if (top[i].getSimilarFilmId() == similarFilmId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private List<FilmSimilarity> compute(List<Integer> filmIds) {
+        try {
+            return pool.submit(() -> filmIds.parallelStream()
+                    .flatMap(filmId -> computeNeighbours(filmId).stream())
+                    .toList()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Расчёт похожих фильмов прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка расчёта похожих фильмов", e.getCause());
+        }
+    }
+
+    private List<FilmSimilarity> computeNeighbours(int filmId) {
+        int[] likers = likeIndex.getUsersWhoLiked(filmId);
+        if (likers.length == 0) {
+            return List.of();
+        }
+        PriorityQueue<FilmSimilarity> worstFirst = new PriorityQueue<>(BEST_FIRST.reversed());
+        for (Map.Entry<Integer, Integer> entry : coLikes(filmId, likers).entrySet()) {
+            double score = score(entry.getValue(), likers.length,
+                    likeIndex.getUsersWhoLiked(entry.getKey()).length);
+            worstFirst.add(new FilmSimilarity(filmId, entry.getKey(), score));
+            if (worstFirst.size() > neighbours) {
+                worstFirst.poll();
+            }
+        }
+        return new ArrayList<>(worstFirst);
+    }
+
+    // Число общих лайкнувших filmId с каждым фильмом, который лайкали его лайкнувшие
+    private Map<Integer, Integer> coLikes(int filmId, int[] likers) {
+        Map<Integer, Integer> coLikes = new HashMap<>();
+        for (int userId : likers) {
+            for (int otherFilmId : likeIndex.getFilmsLikedBy(userId)) {
+                if (otherFilmId != filmId) {
+                    coLikes.merge(otherFilmId, 1, Integer::sum);
+                }
+            }
+        }
+        return coLikes;
+    }
+
+    // cos(x, y) = |лайкнувшие x ∩ лайкнувшие y| / sqrt(|лайкнувшие x| * |лайкнувшие y|)
+    private static double score(int common, int likers, int otherLikers) {
+        return common / Math.sqrt((double) likers * Math.max(1, otherLikers));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
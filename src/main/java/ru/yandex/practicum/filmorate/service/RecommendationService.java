@@ -0,0 +1,199 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.cache.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.cache.RecommendationCache;
+import ru.yandex.practicum.filmorate.storage.cache.UserMinHashIndex;
+import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.dal.dto.RecommendationCacheStatsDto;
+
+import java.util.*;
+
+// Рекомендации через генерацию кандидатов: от лайков пользователя по индексу фильм -> лайкнувшие
+// собираются только пользователи хотя бы с одним общим лайком. Фильмы k самых похожих из них
+// получают вес, равный числу общих лайков соседа, и возвращаются top-N непросмотренных.
+// Стоимость зависит от размера окрестности пользователя, а не от числа пользователей.
+// В приближённом режиме (filmorate.recommendations.approximate=true) окрестность берётся
+// из LSH-корзин MinHash-подписей, а общие лайки считаются только для этих кандидатов
+@Service
+@Slf4j
+public class RecommendationService {
+
+    private final LikeIndex likeIndex;
+    private final UserMinHashIndex minHashIndex;
+    private final RecommendationCache cache;
+    private final UserDbStorage userDbStorage;
+    private final boolean approximate;
+    private final int neighbours;
+    private final int limit;
+
+    public RecommendationService(LikeIndex likeIndex, UserMinHashIndex minHashIndex, RecommendationCache cache,
+                                 UserDbStorage userDbStorage,
+                                 @Value("${filmorate.recommendations.approximate:false}") boolean approximate,
+                                 @Value("${filmorate.recommendations.neighbours:10}") int neighbours,
+                                 @Value("${filmorate.recommendations.limit:20}") int limit) {
+        this.likeIndex = likeIndex;
+        this.minHashIndex = minHashIndex;
+        this.cache = cache;
+        this.userDbStorage = userDbStorage;
+        this.approximate = approximate;
+        this.neighbours = neighbours;
+        this.limit = limit;
+    }
+
+    // id рекомендованных фильмов по убыванию веса; пустой Optional — индекс лайков ещё не построен
+    public Optional<List<Integer>> recommend(int userId) {
+        Optional<List<Integer>> cached = cache.get(userId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        long version = cache.version();
+        Optional<Recommendation> computed = approximate && minHashIndex.isReady()
+                ? computeApproximate(userId)
+                : computeExact(userId);
+        computed.ifPresent(result -> cache.put(userId, result.filmIds, result.neighbourIds, version));
+        return computed.map(result -> result.filmIds);
+    }
+
+    // Пока индекс лайков не построен — тот же взвешенный выбор по k соседям, но в SQL
+    public List<Integer> recommendFromStorage(int userId) {
+        return userDbStorage.getRecommendedFilmIds(userId, neighbours, limit);
+    }
+
+    public Optional<List<Integer>> recommendExact(int userId) {
+        return computeExact(userId).map(result -> result.filmIds);
+    }
+
+    public Optional<List<Integer>> recommendApproximate(int userId) {
+        return computeApproximate(userId).map(result -> result.filmIds);
+    }
+
+    public RecommendationCacheStatsDto getCacheStats() {
+        return cache.getStats();
+    }
+
+    private Optional<Recommendation> computeExact(int userId) {
+        if (!likeIndex.isReady()) {
+            return Optional.empty();
+        }
+        int[] liked = likeIndex.getFilmsLikedBy(userId);
+
+        // Все лайкнувшие те же фильмы одним массивом: после сортировки длина серии одинаковых id —
+        // число общих лайков с этим пользователем
+        int total = 0;
+        for (int filmId : liked) {
+            total += likeIndex.getUsersWhoLiked(filmId).length;
+        }
+        int[] others = new int[total];
+        int size = 0;
+        for (int filmId : liked) {
+            for (int otherUserId : likeIndex.getUsersWhoLiked(filmId)) {
+                if (otherUserId != userId) {
+                    others[size++] = otherUserId;
+                }
+            }
+        }
+        Arrays.sort(others, 0, size);
+
+        long[] overlap = new long[size];
+        int users = 0;
+        for (int i = 0; i < size; ) {
+            int j = i;
+            while (j < size && others[j] == others[i]) {
+                j++;
+            }
+            overlap[users++] = rankKey(j - i, others[i]);
+            i = j;
+        }
+        return Optional.of(rank(userId, liked, overlap, users));
+    }
+
+    private Optional<Recommendation> computeApproximate(int userId) {
+        if (!likeIndex.isReady() || !minHashIndex.isReady()) {
+            return Optional.empty();
+        }
+        int[] liked = likeIndex.getFilmsLikedBy(userId);
+
+        Set<Integer> candidates = minHashIndex.getCandidates(userId);
+        long[] overlap = new long[candidates.size()];
+        int users = 0;
+        for (int candidateId : candidates) {
+            int common = LikeIndex.intersectionSize(liked, likeIndex.getFilmsLikedBy(candidateId));
+            if (common > 0) {
+                overlap[users++] = rankKey(common, candidateId);
+            }
+        }
+        return Optional.of(rank(userId, liked, overlap, users));
+    }
+
+    // overlap — ключи rankKey(общих лайков, id пользователя) для первых users элементов
+    private Recommendation rank(int userId, int[] liked, long[] overlap, int users) {
+        // k соседей: больше общих лайков, при равенстве — меньший id
+        Arrays.sort(overlap, 0, users);
+        int[] neighbourIds = new int[Math.min(neighbours, users)];
+        int total = 0;
+        for (int i = 0; i < neighbourIds.length; i++) {
+            neighbourIds[i] = idOf(overlap[i]);
+            total += likeIndex.getFilmsLikedBy(neighbourIds[i]).length;
+        }
+
+        // Непросмотренные фильмы соседей в паре с весом соседа: (film_id << 32) | вес
+        long[] weighted = new long[total];
+        int size = 0;
+        for (int i = 0; i < neighbourIds.length; i++) {
+            int weight = countOf(overlap[i]);
+            for (int filmId : likeIndex.getFilmsLikedBy(neighbourIds[i])) {
+                if (Arrays.binarySearch(liked, filmId) < 0) {
+                    weighted[size++] = ((long) filmId << 32) | weight;
+                }
+            }
+        }
+        Arrays.sort(weighted, 0, size);
+
+        long[] scores = new long[size];
+        int candidates = 0;
+        for (int i = 0; i < size; ) {
+            int filmId = (int) (weighted[i] >>> 32);
+            int score = 0;
+            for (; i < size && (int) (weighted[i] >>> 32) == filmId; i++) {
+                score += (int) weighted[i];
+            }
+            scores[candidates++] = rankKey(score, filmId);
+        }
+        Arrays.sort(scores, 0, candidates);
+
+        List<Integer> result = new ArrayList<>(Math.min(limit, candidates));
+        for (int i = 0; i < candidates && result.size() < limit; i++) {
+            result.add(idOf(scores[i]));
+        }
+        log.debug("Рекомендации для пользователя с id={}: окрестность {}, соседей {}, кандидатов {}",
+                userId, users, neighbourIds.length, candidates);
+        return new Recommendation(result, neighbourIds);
+    }
+
+    // Ключ ранжирования: по возрастанию ключа — больше count, затем меньший id
+    private static long rankKey(int count, int id) {
+        return ((long) (Integer.MAX_VALUE - count) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int idOf(long rankKey) {
+        return (int) rankKey;
+    }
+
+    private static int countOf(long rankKey) {
+        return Integer.MAX_VALUE - (int) (rankKey >>> 32);
+    }
+
+    // Результат расчёта и соседи, от лайков которых он зависит — нужны кешу для инвалидации
+    private static final class Recommendation {
+        private final List<Integer> filmIds;
+        private final int[] neighbourIds;
+
+        private Recommendation(List<Integer> filmIds, int[] neighbourIds) {
+            this.filmIds = filmIds;
+            this.neighbourIds = neighbourIds;
+        }
+    }
+}
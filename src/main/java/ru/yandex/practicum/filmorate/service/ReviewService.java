@@ -4,8 +4,10 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
+import ru.yandex.practicum.filmorate.storage.dal.FeedWriter;
 import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
 
@@ -19,10 +21,12 @@ public class ReviewService {
     private final ReviewStorage reviewStorage;
     private final UserDbStorage userDbStorage;
     private final FilmDbStorage filmDbStorage;
+    private final FeedWriter feedWriter;
 
     public Review addReview(Review review) {
         isUserExists(review.getUserId());
         isFilmExists(review.getFilmId());
+        feedWriter.awaitCapacity();
         Review addedReview = reviewStorage.addReview(review);
         log.info("Добавлен новый отзыв: {}", addedReview);
         return addedReview;
@@ -30,6 +34,7 @@ public class ReviewService {
 
     public Review updateReview(Review review) {
         getExsitsReview(review.getReviewId());
+        feedWriter.awaitCapacity();
         Review updatedReview = reviewStorage.updateReview(review);
         log.info("Обновлён отзыв: {}", updatedReview);
         return updatedReview;
@@ -47,14 +52,14 @@ public class ReviewService {
     }
 
     private void isUserExists(int userId) {
-        if (userDbStorage.findUserById(userId).isEmpty()) {
+        if (!userDbStorage.existsUser(userId)) {
             log.error("Пользователь с id={} не найден", userId);
             throw new NotFoundException("User with ID " + userId + " not found");
         }
     }
 
     private void isFilmExists(int filmId) {
-        if (filmDbStorage.findFilmById(filmId).isEmpty()) {
+        if (!filmDbStorage.existsFilm(filmId)) {
             log.error("Фильм с id={} не найден", filmId);
             throw new NotFoundException("Film with ID " + filmId + " not found");
         }
@@ -62,6 +67,7 @@ public class ReviewService {
 
     public void deleteReview(int reviewId) {
         getExsitsReview(reviewId);
+        feedWriter.awaitCapacity();
         reviewStorage.deleteReview(reviewId);
         log.info("Удалён отзыв с id={}", reviewId);
     }
@@ -84,6 +90,24 @@ public class ReviewService {
         return reviews;
     }
 
+    // Курсор отзывов — пара (useful, review_id) последнего отзыва страницы
+    public Page<Review> getReviewsPage(Integer filmId, String after, int limit) {
+        if (limit == 0) {
+            return Page.of(List.of(), 0, review -> new int[]{review.getUseful(), review.getReviewId()});
+        }
+        Integer afterUseful = null;
+        int afterReviewId = 0;
+        if (after != null) {
+            int[] key = Page.decodeCursor(after, 2);
+            afterUseful = key[0];
+            afterReviewId = key[1];
+        }
+        Page<Review> page = Page.of(reviewStorage.findReviewsPage(filmId, afterUseful, afterReviewId, limit + 1),
+                limit, review -> new int[]{review.getUseful(), review.getReviewId()});
+        log.info("Получена страница отзывов (filmId={}), размер: {}", filmId, page.getItems().size());
+        return page;
+    }
+
     public void addLike(int reviewId, int userId) {
         isUserExists(userId);
         reviewStorage.addLike(reviewId, userId);
@@ -7,11 +7,18 @@ import ru.yandex.practicum.filmorate.exception.RelationshipException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.model.Friendship;
+import ru.yandex.practicum.filmorate.model.Page;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.cache.FriendTimeline;
+import ru.yandex.practicum.filmorate.storage.cache.SocialGraph;
+import ru.yandex.practicum.filmorate.storage.dal.FeedWriter;
 import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
 import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.dal.dto.FeedWriterStatsDto;
+import ru.yandex.practicum.filmorate.storage.dal.dto.RecommendationCacheStatsDto;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 
 @Service
@@ -20,10 +27,20 @@ public class UserService {
 
     private final UserDbStorage userDbStorage;
     private final FilmDbStorage filmDbStorage;
-
-    public UserService(UserDbStorage userDbStorage, FilmDbStorage filmDbStorage) {
+    private final RecommendationService recommendationService;
+    private final SocialGraph socialGraph;
+    private final FeedWriter feedWriter;
+    private final FriendTimeline friendTimeline;
+
+    public UserService(UserDbStorage userDbStorage, FilmDbStorage filmDbStorage,
+                       RecommendationService recommendationService, SocialGraph socialGraph, FeedWriter feedWriter,
+                       FriendTimeline friendTimeline) {
         this.userDbStorage = userDbStorage;
         this.filmDbStorage = filmDbStorage;
+        this.recommendationService = recommendationService;
+        this.socialGraph = socialGraph;
+        this.feedWriter = feedWriter;
+        this.friendTimeline = friendTimeline;
     }
 
     public User addUser(User user) {
@@ -34,16 +51,30 @@ public class UserService {
     }
 
     public User updateUser(User newUser) {
-        getExistsUser(newUser.getId());
+        checkUserExists(newUser.getId());
         setNameIfEmpty(newUser);
         User updatedUser = userDbStorage.updateUser(newUser);
         log.info("Изменен объект в таблице users, теперь новый объект: {}", updatedUser);
         return updatedUser;
     }
 
-    public Collection<User> getUsers() {
-        log.info("Получены объекты коллекции(users): {}", userDbStorage.getUsers());
-        return userDbStorage.getUsers();
+    public Collection<User> getUsers(boolean withFriends) {
+        Collection<User> users = userDbStorage.getUsers(withFriends);
+        log.info("Получены объекты коллекции(users): {}", users);
+        return users;
+    }
+
+    public void streamUsers(Consumer<User> consumer) {
+        log.info("Запрошена потоковая выгрузка пользователей");
+        userDbStorage.forEachUser(consumer);
+    }
+
+    public Page<User> getUsersPage(String after, int limit, boolean withFriends) {
+        int afterId = after == null ? 0 : Page.decodeCursor(after, 1)[0];
+        Page<User> page = Page.of(userDbStorage.getUsersPage(afterId, limit + 1, withFriends), limit,
+                user -> new int[]{user.getId()});
+        log.info("Получена страница пользователей после id={}, размер: {}", afterId, page.getItems().size());
+        return page;
     }
 
     private Optional<User> getExistsUser(int userId) {
@@ -61,17 +92,24 @@ public class UserService {
         return getExistsUser(id);
     }
 
+    // Проверка только существования — без загрузки пользователя и его друзей
+    private void checkUserExists(int userId) {
+        if (!userDbStorage.existsUser(userId)) {
+            log.error("Пользователь с id={} не найден", userId);
+            throw new NotFoundException("Пользователь с id=" + userId + " не найден");
+        }
+    }
+
     public Friendship addFriend(int userId, int friendId) {
         if (userId == friendId) {
             log.error("Попытка добавить себя же в друзья id={}", userId);
             throw new RelationshipException("Попытка добавить себя же в друзья id=" + userId);
         }
-        getExistsUser(userId);
-        getExistsUser(friendId);
-
-
+        // Существование обоих пользователей проверяется внутри транзакции хранилища
+        feedWriter.awaitCapacity();
+        Friendship friendship = userDbStorage.addFriend(userId, friendId);
         log.info("Пользователь с id={} стал другом пользователя с id={}", userId, friendId);
-        return userDbStorage.addFriend(userId, friendId);
+        return friendship;
     }
 
     public void deleteUser(int userId) {
@@ -84,81 +122,93 @@ public class UserService {
             throw new RelationshipException("Попытка удалить себя же из друзьей id=" + userId);
         }
 
-        getExistsUser(userId);
-        getExistsUser(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
+        feedWriter.awaitCapacity();
         userDbStorage.removeFriend(userId, friendId);
         log.info("Пользователь с id={} удалил пользователя с id={} из списка друзей", userId, friendId);
     }
 
-    public Set<Friendship> getFriends(int userId) {
-        getExistsUser(userId);
-        return userDbStorage.getFriendsByUserId(userId);
+    public List<User> getFriends(int userId) {
+        checkUserExists(userId);
+        return userDbStorage.getFriendUsers(userId);
     }
 
     public List<User> findMutualFriends(int userId, int friendId) {
-        getExistsUser(userId);
-        getExistsUser(friendId);
+        checkUserExists(userId);
+        checkUserExists(friendId);
 
-        List<User> mutualFriends = userDbStorage.findMutualFriends(userId, friendId);
+        List<User> mutualFriends = socialGraph.getMutualFriends(userId, friendId)
+                .map(ids -> userDbStorage.getUsersByIds(Arrays.stream(ids).boxed().toList()))
+                .orElseGet(() -> userDbStorage.findMutualFriends(userId, friendId));
         log.info("Общие друзья между пользователями с id={} и id={}: {}", userId, friendId, mutualFriends);
         return mutualFriends;
     }
 
+    public List<User> getFriendSuggestions(int userId, int count) {
+        checkUserExists(userId);
+
+        List<Integer> suggestionIds = socialGraph.getSuggestions(userId, count)
+                .map(ids -> Arrays.stream(ids).boxed().toList())
+                .orElseGet(() -> userDbStorage.getFriendSuggestionIds(userId, count));
+        log.info("Подсказки друзей для пользователя с id={}: {}", userId, suggestionIds);
+        return userDbStorage.getUsersByIds(suggestionIds);
+    }
+
     public Collection<Feed> getFeed(int userId) {
-        getExistsUser(userId);
+        checkUserExists(userId);
 
         log.info("Получена лента событий пользователя с id={}", userId);
         return userDbStorage.getFeed(userId);
     }
 
-    private void setNameIfEmpty(User user) {
-        if (user.getName() == null || user.getName().isBlank()) {
-            user.setName(user.getLogin());
-        }
-    }
+    public List<Feed> getFeedPage(int userId, Integer before, int limit) {
+        checkUserExists(userId);
 
-    public List<Film> getRecommendations(int userId) {
-        userDbStorage.findUserById(userId);
+        List<Feed> page = userDbStorage.getFeedPage(userId, before, limit);
+        log.info("Получена страница ленты событий пользователя с id={} до события {}, размер: {}",
+                userId, before, page.size());
+        return page;
+    }
 
-        Set<Integer> userLikes = userDbStorage.getLikesByUserId(userId);
-        if (userLikes.isEmpty()) {
-            log.error("Пользователь не оставлял лайк ни одному фильму");
-            return List.of();
+    public List<Feed> getTimeline(int userId, int limit) {
+        checkUserExists(userId);
 
+        // Холодная или запасная загрузка читает БД — сначала дописываем события из очереди
+        if (!friendTimeline.isWarm(userId, limit)) {
+            feedWriter.flush();
         }
-        Map<Integer, Set<Integer>> allLikes = userDbStorage.getAllLikes();
-        if (allLikes.size() == 1) {
-            log.error("Нет рекомендаций: только один пользователь или нет общих лайков");
-            return List.of();
-        }
+        List<Feed> timeline = friendTimeline.getTimeline(userId, limit);
+        log.info("Получена лента друзей пользователя с id={}, событий: {}", userId, timeline.size());
+        return timeline;
+    }
 
-        int mostSimilarUserId = -1;
-        int maxCommonLikes = -1;
+    private void setNameIfEmpty(User user) {
+        if (user.getName() == null || user.getName().isBlank()) {
+            user.setName(user.getLogin());
+        }
+    }
 
-        for (Map.Entry<Integer, Set<Integer>> entry : allLikes.entrySet()) {
-            int otherUserId = entry.getKey();
-            if (otherUserId == userId) continue;
+    public FeedWriterStatsDto getFeedWriterStats() {
+        return feedWriter.getStats();
+    }
 
-            Set<Integer> otherUserLikes = entry.getValue();
-            Set<Integer> common = new HashSet<>(userLikes);
-            common.retainAll(otherUserLikes);
+    public RecommendationCacheStatsDto getRecommendationCacheStats() {
+        return recommendationService.getCacheStats();
+    }
 
-            if (common.size() > maxCommonLikes) {
-                maxCommonLikes = common.size();
-                mostSimilarUserId = otherUserId;
-            }
-        }
+    public List<Film> getRecommendations(int userId) {
+        checkUserExists(userId);
 
-        if (mostSimilarUserId == -1) {
-            log.error("Нет рекомендаций: только один пользователь или нет общих лайков");
+        List<Integer> filmIds = recommendationService.recommend(userId)
+                .orElseGet(() -> recommendationService.recommendFromStorage(userId));
+        if (filmIds.isEmpty()) {
+            log.info("Нет рекомендаций для пользователя с id={}: нет лайков или пользователей с общими лайками", userId);
             return List.of();
         }
 
-        Set<Integer> mostSimilarUserLikes = allLikes.get(mostSimilarUserId);
-        mostSimilarUserLikes.removeAll(userLikes);
-
-        List<Film> recommendedFilms = filmDbStorage.getFilmsByIds(mostSimilarUserLikes);
+        List<Film> recommendedFilms = filmDbStorage.getFilmsInOrder(filmIds);
         log.info("Найдены рекомендованные фильмы для пользователя: {}", recommendedFilms);
         return recommendedFilms;
     }
@@ -14,7 +14,12 @@ public interface FilmStorage {
 
     Collection<Film> getFilms();
 
+    List<Film> getFilmsPage(int afterId, int limit);
+
     Optional<Film> findFilmById(int id);
 
+    // Проверка существования без загрузки фильма и его связей
+    boolean existsFilm(int id);
+
     List<Film> getCommonFilmsSortedByPopularity(int userId, int friendId);
 }
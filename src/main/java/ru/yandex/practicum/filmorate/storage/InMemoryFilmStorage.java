@@ -27,11 +27,25 @@ public class InMemoryFilmStorage implements FilmStorage {
         return films.values();
     }
 
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        return films.values().stream()
+                .filter(film -> film.getId() > afterId)
+                .sorted(Comparator.comparingInt(Film::getId))
+                .limit(limit)
+                .toList();
+    }
+
     @Override
     public Optional<Film> findFilmById(int id) {
         return Optional.ofNullable(films.get(id));
     }
 
+    @Override
+    public boolean existsFilm(int id) {
+        return films.containsKey(id);
+    }
+
     @Override
     public List<Film> getCommonFilmsSortedByPopularity(int userId, int friendId) {
         return List.of();
@@ -4,7 +4,9 @@ import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -26,12 +28,26 @@ public class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public Collection<User> getUsers() {
+    public Collection<User> getUsers(boolean withFriends) {
         return users.values();
     }
 
+    @Override
+    public List<User> getUsersPage(int afterId, int limit, boolean withFriends) {
+        return users.values().stream()
+                .filter(user -> user.getId() > afterId)
+                .sorted(Comparator.comparingInt(User::getId))
+                .limit(limit)
+                .toList();
+    }
+
     @Override
     public Optional<User> findUserById(int id) {
         return Optional.ofNullable(users.get(id));
     }
+
+    @Override
+    public boolean existsUser(int id) {
+        return users.containsKey(id);
+    }
 }
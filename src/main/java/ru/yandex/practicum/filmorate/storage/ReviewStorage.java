@@ -18,6 +18,9 @@ public interface ReviewStorage {
 
     List<Review> findAllReviews(int count);
 
+    // Keyset-страница отзывов в порядке useful DESC, review_id ASC; afterUseful == null — первая страница
+    List<Review> findReviewsPage(Integer filmId, Integer afterUseful, int afterReviewId, int limit);
+
     void addLike(int reviewId, int userId);
 
     void addDislike(int reviewId, int userId);
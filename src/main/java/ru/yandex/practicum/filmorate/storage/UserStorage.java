@@ -3,6 +3,7 @@ package ru.yandex.practicum.filmorate.storage;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserStorage {
@@ -11,7 +12,13 @@ public interface UserStorage {
 
     User updateUser(User newUser);
 
-    Collection<User> getUsers();
+    // withFriends == false — друзья не загружаются, у пользователей friends == null
+    Collection<User> getUsers(boolean withFriends);
+
+    List<User> getUsersPage(int afterId, int limit, boolean withFriends);
 
     Optional<User> findUserById(int id);
+
+    // Проверка существования без загрузки пользователя
+    boolean existsUser(int id);
 }
@@ -0,0 +1,175 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.UserEvent;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Множества существующих id пользователей и фильмов в виде битовых масок — для проверок существования
+// без загрузки сущности. Отсутствие id в множестве не окончательно: хранилище перепроверяет его в БД.
+// Удаление увеличивает поколение множества: id, подтверждённый в БД до удаления, в множество уже не вернётся
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EntityIdIndex {
+
+    private final JdbcTemplate jdbc;
+
+    private final IdSet users = new IdSet();
+    private final IdSet films = new IdSet();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        load(users, "SELECT user_id FROM users");
+        load(films, "SELECT film_id FROM films");
+        log.info("Индекс id построен: пользователей {}, фильмов {}, {} мс",
+                users.size(), films.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean containsUser(int userId) {
+        return users.contains(userId);
+    }
+
+    public boolean containsFilm(int filmId) {
+        return films.contains(filmId);
+    }
+
+    // Поколение берётся до запроса в БД и передаётся в addUser/addFilm вместе с подтверждённым id
+    public long userGeneration() {
+        return users.generation();
+    }
+
+    public long filmGeneration() {
+        return films.generation();
+    }
+
+    // Вызывается хранилищем, когда БД подтвердила id, которого не было в множестве;
+    // если с начала проверки что-то удалили, id не добавляется — его могли удалить после проверки
+    public void addUser(int userId, long generation) {
+        users.add(userId, generation);
+    }
+
+    public void addFilm(int filmId, long generation) {
+        films.add(filmId, generation);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUser(UserEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            users.remove(event.getUserId());
+        } else {
+            users.add(event.getUserId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            films.remove(event.getFilmId());
+        } else {
+            films.add(event.getFilmId());
+        }
+    }
+
+    // Удаления, пришедшие во время загрузки, запоминаются и не дают загруженным id вернуться в множество
+    private void load(IdSet ids, String sql) {
+        ids.beginLoad();
+        LikeIndex.IntList loaded = new LikeIndex.IntList();
+        try {
+            jdbc.query(sql, (RowCallbackHandler) rs -> loaded.add(rs.getInt(1)));
+        } finally {
+            ids.endLoad(loaded.toSortedArray());
+        }
+    }
+
+    // Растущая битовая маска: чтение без блокировок, запись и расширение — под монитором.
+    // Биты хранятся в AtomicLongArray, чтобы читатели видели запись без общей блокировки
+    private static final class IdSet {
+        private volatile AtomicLongArray words = new AtomicLongArray(16);
+        private int size;
+        private volatile long generation;
+        // Id, удалённые во время загрузки; null — загрузка не идёт
+        private Set<Integer> removedWhileLoading;
+
+        private long generation() {
+            return generation;
+        }
+
+        private synchronized void add(int id, long expectedGeneration) {
+            if (generation == expectedGeneration) {
+                add(id);
+            }
+        }
+
+        private synchronized void beginLoad() {
+            removedWhileLoading = new HashSet<>();
+        }
+
+        private synchronized void endLoad(int[] loaded) {
+            for (int id : loaded) {
+                if (!removedWhileLoading.contains(id)) {
+                    add(id);
+                }
+            }
+            removedWhileLoading = null;
+        }
+
+        private boolean contains(int id) {
+            AtomicLongArray current = words;
+            int word = id >>> 6;
+            return id > 0 && word < current.length() && (current.get(word) & (1L << id)) != 0;
+        }
+
+        private synchronized void add(int id) {
+            if (id <= 0) {
+                return;
+            }
+            int word = id >>> 6;
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                current = grown;
+            }
+            long previous = current.getAndUpdate(word, bits -> bits | (1L << id));
+            if ((previous & (1L << id)) == 0) {
+                size++;
+            }
+        }
+
+        private synchronized void remove(int id) {
+            generation++;
+            if (removedWhileLoading != null) {
+                removedWhileLoading.add(id);
+            }
+            AtomicLongArray current = words;
+            int word = id >>> 6;
+            if (id <= 0 || word >= current.length()) {
+                return;
+            }
+            long previous = current.getAndUpdate(word, bits -> bits & ~(1L << id));
+            if ((previous & (1L << id)) != 0) {
+                size--;
+            }
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.DirectorEvent;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Инвертированный индекс триграмм по названиям фильмов и именам режиссёров.
+// Строки приводятся к нижнему регистру (в том числе кириллица, ё == е); кандидаты, найденные
+// пересечением списков триграмм, проверяются на вхождение подстроки целиком
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmSearchIndex {
+
+    private final JdbcTemplate jdbc;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TextIndex titles = new TextIndex();
+    private final TextIndex directorNames = new TextIndex();
+    private final Map<Integer, Set<Integer>> directorsByFilm = new HashMap<>();
+    private final Map<Integer, Set<Integer>> filmsByDirector = new HashMap<>();
+    private boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            titles.clear();
+            directorNames.clear();
+            directorsByFilm.clear();
+            filmsByDirector.clear();
+
+            jdbc.query("SELECT film_id, name FROM films", (RowCallbackHandler) rs ->
+                    titles.put(rs.getInt("film_id"), rs.getString("name")));
+            jdbc.query("SELECT director_id, name FROM directors", (RowCallbackHandler) rs ->
+                    directorNames.put(rs.getInt("director_id"), rs.getString("name")));
+            jdbc.query("SELECT film_id, director_id FROM film_director", (RowCallbackHandler) rs ->
+                    link(rs.getInt("film_id"), rs.getInt("director_id")));
+            ready = true;
+            log.info("Поисковый индекс построен: фильмов {}, режиссёров {}, триграмм {}, {} мс",
+                    titles.size(), directorNames.size(), titles.trigramCount() + directorNames.trigramCount(),
+                    System.currentTimeMillis() - start);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // id подходящих фильмов; пустой Optional — индекс ещё не построен и искать нужно в БД
+    public Optional<Set<Integer>> search(String query, boolean byTitle, boolean byDirector) {
+        String folded = fold(query);
+        lock.readLock().lock();
+        try {
+            if (!ready) {
+                return Optional.empty();
+            }
+            Set<Integer> result = new HashSet<>();
+            if (byTitle) {
+                result.addAll(titles.find(folded));
+            }
+            if (byDirector) {
+                for (int directorId : directorNames.find(folded)) {
+                    result.addAll(filmsByDirector.getOrDefault(directorId, Set.of()));
+                }
+            }
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFilm(FilmEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int filmId = event.getFilmId();
+            titles.remove(filmId);
+            for (int directorId : directorsByFilm.getOrDefault(filmId, Set.of())) {
+                unlinkFilm(directorId, filmId);
+            }
+            directorsByFilm.remove(filmId);
+            if (event.getOperation() == Operation.REMOVE) {
+                return;
+            }
+
+            Film film = event.getFilm();
+            titles.put(filmId, film.getName());
+            if (film.getDirectors() != null) {
+                for (Director director : film.getDirectors()) {
+                    link(filmId, director.getDirectorId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDirector(DirectorEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (!ready) {
+                return;
+            }
+            int directorId = event.getDirectorId();
+            directorNames.remove(directorId);
+            if (event.getOperation() == Operation.REMOVE) {
+                // Связи film_director удаляются каскадно вместе с режиссёром
+                for (int filmId : filmsByDirector.getOrDefault(directorId, Set.of())) {
+                    Set<Integer> directors = directorsByFilm.get(filmId);
+                    if (directors != null) {
+                        directors.remove(directorId);
+                    }
+                }
+                filmsByDirector.remove(directorId);
+                return;
+            }
+            directorNames.put(directorId, event.getDirector().getName());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void link(int filmId, int directorId) {
+        directorsByFilm.computeIfAbsent(filmId, k -> new HashSet<>()).add(directorId);
+        filmsByDirector.computeIfAbsent(directorId, k -> new HashSet<>()).add(filmId);
+    }
+
+    private void unlinkFilm(int directorId, int filmId) {
+        Set<Integer> films = filmsByDirector.get(directorId);
+        if (films != null) {
+            films.remove(filmId);
+            if (films.isEmpty()) {
+                filmsByDirector.remove(directorId);
+            }
+        }
+    }
+
+    private static String fold(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    // Триграмма — три UTF-16 символа, упакованные в long
+    private static long trigram(String text, int from) {
+        return ((long) text.charAt(from) << 32) | ((long) text.charAt(from + 1) << 16) | text.charAt(from + 2);
+    }
+
+    // Индекс одного вида строк: id -> приведённый текст и триграмма -> id, в тексте которых она встречается
+    private static final class TextIndex {
+        private final Map<Integer, String> texts = new HashMap<>();
+        private final Map<Long, Set<Integer>> postings = new HashMap<>();
+
+        private void put(int id, String text) {
+            String folded = fold(text);
+            texts.put(id, folded);
+            for (int i = 0; i + 3 <= folded.length(); i++) {
+                postings.computeIfAbsent(trigram(folded, i), k -> new HashSet<>()).add(id);
+            }
+        }
+
+        private void remove(int id) {
+            String folded = texts.remove(id);
+            if (folded == null) {
+                return;
+            }
+            for (int i = 0; i + 3 <= folded.length(); i++) {
+                long key = trigram(folded, i);
+                Set<Integer> ids = postings.get(key);
+                if (ids != null) {
+                    ids.remove(id);
+                    if (ids.isEmpty()) {
+                        postings.remove(key);
+                    }
+                }
+            }
+        }
+
+        private List<Integer> find(String folded) {
+            Collection<Integer> candidates;
+            if (folded.length() < 3) {
+                // Запрос короче триграммы — проверяем все строки, это всё равно дешевле прохода по таблице
+                candidates = texts.keySet();
+            } else {
+                Set<Integer> smallest = null;
+                List<Set<Integer>> lists = new ArrayList<>();
+                for (int i = 0; i + 3 <= folded.length(); i++) {
+                    Set<Integer> ids = postings.get(trigram(folded, i));
+                    if (ids == null) {
+                        return List.of();
+                    }
+                    lists.add(ids);
+                    if (smallest == null || ids.size() < smallest.size()) {
+                        smallest = ids;
+                    }
+                }
+                candidates = new ArrayList<>(smallest);
+                for (Set<Integer> ids : lists) {
+                    if (ids != smallest) {
+                        candidates.removeIf(id -> !ids.contains(id));
+                    }
+                }
+            }
+
+            List<Integer> result = new ArrayList<>();
+            for (int id : candidates) {
+                if (texts.get(id).contains(folded)) {
+                    result.add(id);
+                }
+            }
+            return result;
+        }
+
+        private void clear() {
+            texts.clear();
+            postings.clear();
+        }
+
+        private int size() {
+            return texts.size();
+        }
+
+        private int trigramCount() {
+            return postings.size();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FriendEvent;
+import ru.yandex.practicum.filmorate.model.event.UserEvent;
+import ru.yandex.practicum.filmorate.storage.dal.mappers.FeedRowMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Лента друзей с разветвлением при записи: у каждого читавшего её пользователя — кольцевой буфер
+// последних capacity событий тех, кого он добавил в друзья. Записанное событие сразу раскладывается
+// по буферам подписчиков автора, поэтому чтение не зависит от числа друзей.
+// Буфер создаётся при первом чтении из БД (холодный пользователь) и сбрасывается при изменении его друзей.
+// Буферов не больше max-users: при создании нового вытесняется тот, который дольше всех не читали
+@Component
+@Slf4j
+public class FriendTimeline {
+
+    private final JdbcTemplate jdbc;
+    private final FeedRowMapper mapper;
+    private final SocialGraph socialGraph;
+    private final int capacity;
+    private final int maxUsers;
+
+    private final Map<Integer, Ring> timelines = new ConcurrentHashMap<>();
+    // Порядок чтения буферов для вытеснения; создание и удаление буфера — под его монитором
+    private final LinkedHashMap<Integer, Boolean> readOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    public FriendTimeline(JdbcTemplate jdbc, FeedRowMapper mapper, SocialGraph socialGraph,
+                          @Value("${filmorate.timeline.capacity:200}") int capacity,
+                          @Value("${filmorate.timeline.max-users:10000}") int maxUsers) {
+        this.jdbc = jdbc;
+        this.mapper = mapper;
+        this.socialGraph = socialGraph;
+        this.capacity = capacity;
+        this.maxUsers = maxUsers;
+    }
+
+    // Последние limit событий друзей по возрастанию event_id
+    public List<Feed> getTimeline(int userId, int limit) {
+        if (!socialGraph.isReady() || limit > capacity) {
+            return load(userId, limit);
+        }
+        Ring ring = timelines.get(userId);
+        if (ring != null && ring.isLoaded()) {
+            synchronized (readOrder) {
+                readOrder.get(userId);
+            }
+            return ring.latest(limit);
+        }
+        if (ring == null) {
+            Ring created = new Ring(capacity);
+            if (register(userId, created)) {
+                // События, разложенные пока шла загрузка, уже в буфере — load их не потеряет и не задвоит
+                created.load(load(userId, capacity));
+                log.debug("Лента друзей пользователя с id={} загружена в буфер", userId);
+                return created.latest(limit);
+            }
+        }
+        // Буфер загружает другой запрос
+        return load(userId, limit);
+    }
+
+    public boolean isBuffered(int userId) {
+        return timelines.containsKey(userId);
+    }
+
+    // true — чтение отдаст загруженный буфер, false — пойдёт в БД
+    public boolean isWarm(int userId, int limit) {
+        if (!socialGraph.isReady() || limit > capacity) {
+            return false;
+        }
+        Ring ring = timelines.get(userId);
+        return ring != null && ring.isLoaded();
+    }
+
+    // Вызывается после записи пакета событий в БД, когда у них уже есть event_id
+    public void onWritten(List<Feed> written) {
+        if (timelines.isEmpty()) {
+            return;
+        }
+        for (Feed feed : written) {
+            for (int followerId : socialGraph.getFollowers(feed.getUserId())) {
+                Ring ring = timelines.get(followerId);
+                if (ring != null) {
+                    ring.push(feed);
+                }
+            }
+        }
+    }
+
+    // Список друзей изменился — буфер пересоберётся из БД при следующем чтении
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFriend(FriendEvent event) {
+        evict(event.getRequesterId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUser(UserEvent event) {
+        if (event.getOperation() == Operation.REMOVE) {
+            evict(event.getUserId());
+        }
+    }
+
+    // false — буфер уже создан другим запросом
+    private boolean register(int userId, Ring ring) {
+        synchronized (readOrder) {
+            if (timelines.putIfAbsent(userId, ring) != null) {
+                return false;
+            }
+            readOrder.put(userId, Boolean.TRUE);
+            if (readOrder.size() > maxUsers) {
+                Iterator<Integer> eldest = readOrder.keySet().iterator();
+                int evictedId = eldest.next();
+                eldest.remove();
+                timelines.remove(evictedId);
+                log.debug("Буфер ленты друзей пользователя с id={} вытеснен", evictedId);
+            }
+            return true;
+        }
+    }
+
+    private void evict(int userId) {
+        synchronized (readOrder) {
+            timelines.remove(userId);
+            readOrder.remove(userId);
+        }
+    }
+
+    // Последние limit событий друзей одним запросом: соединение с friends и сортировка по event_id
+    private List<Feed> load(int userId, int limit) {
+        String sql = """
+                    SELECT f.* FROM feed f
+                    JOIN friends fr ON f.user_id = fr.addressee_id
+                    WHERE fr.requester_id = ?
+                    ORDER BY f.event_id DESC
+                    LIMIT ?
+                """;
+        List<Feed> events = jdbc.query(sql, mapper, userId, limit);
+        Collections.reverse(events);
+        return events;
+    }
+
+    // Кольцевой буфер событий по возрастанию event_id; при переполнении вытесняется самое старое
+    private static final class Ring {
+        private final Feed[] events;
+        private int head;
+        private int size;
+        private boolean loaded;
+
+        private Ring(int capacity) {
+            this.events = new Feed[capacity];
+        }
+
+        private synchronized boolean isLoaded() {
+            return loaded;
+        }
+
+        private synchronized void push(Feed feed) {
+            if (size == 0 || feed.getEventId() > newest().getEventId()) {
+                append(feed);
+            } else {
+                // Событие пришло не по порядку — редкий путь через полную пересборку
+                List<Feed> merged = snapshot();
+                merged.add(feed);
+                replace(merged);
+            }
+        }
+
+        private synchronized void load(List<Feed> stored) {
+            List<Feed> merged = snapshot();
+            merged.addAll(stored);
+            replace(merged);
+            loaded = true;
+        }
+
+        private synchronized List<Feed> latest(int limit) {
+            int count = Math.min(limit, size);
+            List<Feed> result = new ArrayList<>(count);
+            for (int i = size - count; i < size; i++) {
+                result.add(events[(head + i) % events.length]);
+            }
+            return result;
+        }
+
+        private Feed newest() {
+            return events[(head + size - 1) % events.length];
+        }
+
+        private void append(Feed feed) {
+            if (size < events.length) {
+                events[(head + size) % events.length] = feed;
+                size++;
+            } else {
+                events[head] = feed;
+                head = (head + 1) % events.length;
+            }
+        }
+
+        private List<Feed> snapshot() {
+            return new ArrayList<>(latest(size));
+        }
+
+        private void replace(List<Feed> merged) {
+            merged.sort(Comparator.comparingInt(Feed::getEventId));
+            head = 0;
+            size = 0;
+            Arrays.fill(events, null);
+            int previousId = Integer.MIN_VALUE;
+            for (Feed feed : merged) {
+                if (feed.getEventId() != previousId) {
+                    append(feed);
+                    previousId = feed.getEventId();
+                }
+            }
+        }
+    }
+}
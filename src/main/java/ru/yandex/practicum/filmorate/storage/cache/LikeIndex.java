@@ -0,0 +1,241 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Лайки в памяти без упаковки: для каждого пользователя отсортированный массив id фильмов
+// и для каждого фильма — отсортированный массив id пользователей.
+// Массивы не изменяются после публикации — запись подменяет массив целиком, поэтому чтение идёт без блокировок
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LikeIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbc;
+
+    private final Map<Integer, int[]> filmsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> usersByFilm = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Integer, IntList> loadedByUser = new HashMap<>();
+        Map<Integer, IntList> loadedByFilm = new HashMap<>();
+        jdbc.query("SELECT user_id, film_id FROM likes", (RowCallbackHandler) rs -> {
+            int userId = rs.getInt("user_id");
+            int filmId = rs.getInt("film_id");
+            loadedByUser.computeIfAbsent(userId, k -> new IntList()).add(filmId);
+            loadedByFilm.computeIfAbsent(filmId, k -> new IntList()).add(userId);
+        });
+
+        filmsByUser.clear();
+        usersByFilm.clear();
+        loadedByUser.forEach((userId, films) -> filmsByUser.put(userId, films.toSortedArray()));
+        loadedByFilm.forEach((filmId, users) -> usersByFilm.put(filmId, users.toSortedArray()));
+        ready = true;
+
+        long likes = filmsByUser.values().stream().mapToLong(films -> films.length).sum();
+        log.info("Индекс лайков построен: пользователей {}, фильмов {}, лайков {}, {} мс; " +
+                        "≈{} КБ против ≈{} КБ для тех же данных в HashMap<Integer, HashSet<Integer>>",
+                filmsByUser.size(), usersByFilm.size(), likes, System.currentTimeMillis() - start,
+                estimateArraysBytes() / 1024, estimateHashSetsBytes(likes) / 1024);
+    }
+
+    // Общие лайки двух пользователей по возрастанию id; пустой Optional — индекс ещё не построен
+    public Optional<int[]> getCommonFilms(int userId, int otherUserId) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.of(intersect(filmsOf(userId), filmsOf(otherUserId)));
+    }
+
+    public int[] getUsersWhoLiked(int filmId) {
+        return usersByFilm.getOrDefault(filmId, EMPTY);
+    }
+
+    public int[] getFilmsLikedBy(int userId) {
+        return filmsOf(userId);
+    }
+
+    public Set<Integer> getLikedFilms() {
+        return Set.copyOf(usersByFilm.keySet());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private int[] filmsOf(int userId) {
+        return filmsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onLike(LikeEvent event) {
+        if (!ready) {
+            return;
+        }
+        boolean add = event.getOperation() == Operation.ADD;
+        update(filmsByUser, event.getUserId(), event.getFilmId(), add);
+        update(usersByFilm, event.getFilmId(), event.getUserId(), add);
+    }
+
+    // Лайки удалённого фильма удаляются из БД без отдельных LikeEvent
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilm(FilmEvent event) {
+        if (!ready || event.getOperation() != Operation.REMOVE) {
+            return;
+        }
+        int[] users = usersByFilm.remove(event.getFilmId());
+        if (users != null) {
+            for (int userId : users) {
+                update(filmsByUser, userId, event.getFilmId(), false);
+            }
+        }
+    }
+
+    private static void update(Map<Integer, int[]> index, int key, int value, boolean add) {
+        int[] values = index.getOrDefault(key, EMPTY);
+        int[] updated = add ? insert(values, value) : remove(values, value);
+        if (updated.length == 0) {
+            index.remove(key);
+        } else if (updated != values) {
+            index.put(key, updated);
+        }
+    }
+
+    // Массив int: заголовок 16 байт + 4 байта на элемент; запись в ConcurrentHashMap ≈ 32 байта + Integer-ключ 16
+    private long estimateArraysBytes() {
+        long bytes = 0;
+        for (Map<Integer, int[]> index : List.of(filmsByUser, usersByFilm)) {
+            for (int[] values : index.values()) {
+                bytes += 16 + 4L * values.length + 48;
+            }
+        }
+        return bytes;
+    }
+
+    // HashSet<Integer> на каждый ключ ≈ 100 байт, элемент ≈ 32 байта узла + 16 байт Integer + 8 байт слота таблицы;
+    // считается для одного направления, как в прежнем getAllLikes()
+    private long estimateHashSetsBytes(long likes) {
+        return filmsByUser.size() * (100L + 48) + likes * 56;
+    }
+
+    public static int intersectionSize(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                size++;
+                i++;
+                j++;
+            }
+        }
+        return size;
+    }
+
+    // Пересечение отсортированных массивов; если один намного короче, его элементы ищутся двоичным поиском
+    public static int[] intersect(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] tmp = a;
+            a = b;
+            b = tmp;
+        }
+        int[] result = new int[a.length];
+        int size = 0;
+        if ((long) a.length * 16 < b.length) {
+            int from = 0;
+            for (int value : a) {
+                int pos = Arrays.binarySearch(b, from, b.length, value);
+                if (pos >= 0) {
+                    result[size++] = value;
+                    from = pos + 1;
+                } else {
+                    from = -pos - 1;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    static int[] insert(int[] values, int value) {
+        int pos = Arrays.binarySearch(values, value);
+        if (pos >= 0) {
+            return values;
+        }
+        pos = -pos - 1;
+        int[] result = new int[values.length + 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        result[pos] = value;
+        System.arraycopy(values, pos, result, pos + 1, values.length - pos);
+        return result;
+    }
+
+    static int[] remove(int[] values, int value) {
+        int pos = Arrays.binarySearch(values, value);
+        if (pos < 0) {
+            return values;
+        }
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, pos);
+        System.arraycopy(values, pos + 1, result, pos, values.length - pos - 1);
+        return result;
+    }
+
+    // Растущий массив int без упаковки — только для построения индекса
+    static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
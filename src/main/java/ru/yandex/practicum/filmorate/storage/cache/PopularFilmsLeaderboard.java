@@ -0,0 +1,251 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
+
+import java.util.*;
+
+// Рейтинг популярных фильмов в памяти: счётчики лайков по фильмам и top-K
+// для всего каталога, каждого жанра, каждого года и каждой пары жанр+год.
+// Порядок совпадает с SQL-запросом: like_count DESC, film_id ASC.
+@Component
+@Slf4j
+public class PopularFilmsLeaderboard {
+
+    private final JdbcTemplate jdbc;
+    private final int topK;
+
+    private final Map<Integer, FilmEntry> films = new HashMap<>();
+    private final Map<Long, Board> boards = new HashMap<>();
+    private boolean ready;
+
+    public PopularFilmsLeaderboard(JdbcTemplate jdbc, @Value("${filmorate.popular.top-k:100}") int topK) {
+        this.jdbc = jdbc;
+        this.topK = topK;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        films.clear();
+        boards.clear();
+
+        Map<Integer, List<Integer>> genresByFilm = new HashMap<>();
+        jdbc.query("SELECT film_id, genre_id FROM film_genre", rs -> {
+            genresByFilm.computeIfAbsent(rs.getInt("film_id"), k -> new ArrayList<>()).add(rs.getInt("genre_id"));
+        });
+
+        jdbc.query("SELECT film_id, releaseDate, like_count FROM films", rs -> {
+            int filmId = rs.getInt("film_id");
+            int[] genreIds = genresByFilm.getOrDefault(filmId, List.of()).stream()
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            FilmEntry entry = new FilmEntry(filmId, rs.getInt("like_count"),
+                    rs.getDate("releaseDate").toLocalDate().getYear(), genreIds);
+            films.put(filmId, entry);
+            for (long key : boardKeys(entry)) {
+                boards.computeIfAbsent(key, k -> new Board()).members.add(filmId);
+            }
+        });
+        // Top-K заполнятся лениво при первом чтении
+        boards.values().forEach(board -> board.dirty = true);
+        ready = true;
+        log.info("Рейтинг популярных фильмов построен: {} фильмов, {} срезов, K={}, {} мс",
+                films.size(), boards.size(), topK, System.currentTimeMillis() - start);
+    }
+
+    // Пустой Optional означает, что ответ нужно взять из БД: count больше K или рейтинг ещё не построен
+    public synchronized Optional<List<Integer>> getTop(int count, int genreId, int year) {
+        if (!ready || count > topK) {
+            return Optional.empty();
+        }
+        Board board = boards.get(boardKey(genreId, year));
+        if (board == null) {
+            return Optional.of(List.of());
+        }
+        if (board.dirty) {
+            refill(board);
+        }
+        List<Integer> result = new ArrayList<>(Math.min(count, board.top.size()));
+        for (long rankKey : board.top) {
+            if (result.size() == count) {
+                break;
+            }
+            result.add(filmIdOf(rankKey));
+        }
+        return Optional.of(result);
+    }
+
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    public synchronized int getLikeCount(int filmId) {
+        FilmEntry entry = films.get(filmId);
+        return entry == null ? 0 : entry.likes;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onLike(LikeEvent event) {
+        FilmEntry entry = films.get(event.getFilmId());
+        if (!ready || entry == null) {
+            return;
+        }
+        int delta = event.getOperation() == Operation.ADD ? 1 : -1;
+        changeLikes(entry, Math.max(0, entry.likes + delta));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilm(FilmEvent event) {
+        if (!ready) {
+            return;
+        }
+        FilmEntry previous = films.remove(event.getFilmId());
+        if (previous != null) {
+            for (long key : boardKeys(previous)) {
+                Board board = boards.get(key);
+                if (board != null) {
+                    board.remove(previous.filmId, rankKey(previous));
+                }
+            }
+        }
+        if (event.getOperation() == Operation.REMOVE) {
+            return;
+        }
+
+        // Лайки приходят отдельными LikeEvent, изменение фильма их не трогает
+        Film film = event.getFilm();
+        int likes = previous == null ? 0 : previous.likes;
+        int[] genreIds = film.getGenres() == null ? new int[0] : film.getGenres().stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .toArray();
+        FilmEntry entry = new FilmEntry(film.getId(), likes, film.getReleaseDate().getYear(), genreIds);
+        films.put(entry.filmId, entry);
+        for (long key : boardKeys(entry)) {
+            boards.computeIfAbsent(key, k -> new Board()).add(entry.filmId, rankKey(entry));
+        }
+    }
+
+    private void changeLikes(FilmEntry entry, int likes) {
+        long oldKey = rankKey(entry);
+        entry.likes = likes;
+        long newKey = rankKey(entry);
+        if (oldKey == newKey) {
+            return;
+        }
+        for (long key : boardKeys(entry)) {
+            Board board = boards.get(key);
+            if (board != null) {
+                board.change(oldKey, newKey);
+            }
+        }
+    }
+
+    private void refill(Board board) {
+        PriorityQueue<Long> worstFirst = new PriorityQueue<>(Comparator.reverseOrder());
+        for (int filmId : board.members) {
+            worstFirst.add(rankKey(films.get(filmId)));
+            if (worstFirst.size() > topK) {
+                worstFirst.poll();
+            }
+        }
+        board.top.clear();
+        board.top.addAll(worstFirst);
+        board.dirty = false;
+    }
+
+    private long[] boardKeys(FilmEntry entry) {
+        long[] keys = new long[2 + entry.genreIds.length * 2];
+        int i = 0;
+        keys[i++] = boardKey(0, 0);
+        keys[i++] = boardKey(0, entry.year);
+        for (int genreId : entry.genreIds) {
+            keys[i++] = boardKey(genreId, 0);
+            keys[i++] = boardKey(genreId, entry.year);
+        }
+        return keys;
+    }
+
+    // 0 в качестве жанра или года означает «без фильтра»
+    private static long boardKey(int genreId, int year) {
+        return ((long) genreId << 32) | (year & 0xFFFFFFFFL);
+    }
+
+    // Ключ ранжирования: по возрастанию ключа — больше лайков, затем меньший id
+    private static long rankKey(FilmEntry entry) {
+        return ((long) (Integer.MAX_VALUE - entry.likes) << 32) | (entry.filmId & 0xFFFFFFFFL);
+    }
+
+    private static int filmIdOf(long rankKey) {
+        return (int) rankKey;
+    }
+
+    private static final class FilmEntry {
+        private final int filmId;
+        private final int year;
+        private final int[] genreIds;
+        private int likes;
+
+        private FilmEntry(int filmId, int likes, int year, int[] genreIds) {
+            this.filmId = filmId;
+            this.likes = likes;
+            this.year = year;
+            this.genreIds = genreIds;
+        }
+    }
+
+    // Срез рейтинга: все участники и упорядоченные лучшие K из них.
+    // dirty — top мог потерять точность после удаления или понижения и будет пересобран при чтении.
+    private final class Board {
+        private final Set<Integer> members = new HashSet<>();
+        private final TreeSet<Long> top = new TreeSet<>();
+        private boolean dirty;
+
+        private void add(int filmId, long rankKey) {
+            members.add(filmId);
+            offer(rankKey);
+        }
+
+        private void remove(int filmId, long rankKey) {
+            members.remove(filmId);
+            if (top.remove(rankKey) && members.size() > top.size()) {
+                dirty = true;
+            }
+        }
+
+        private void change(long oldKey, long newKey) {
+            if (top.remove(oldKey)) {
+                top.add(newKey);
+                // Понизившийся фильм оказался последним — кто-то вне top мог его обогнать
+                if (newKey > oldKey && newKey == top.last() && members.size() > top.size()) {
+                    dirty = true;
+                }
+            } else {
+                offer(newKey);
+            }
+        }
+
+        private void offer(long rankKey) {
+            if (dirty) {
+                return;
+            }
+            if (top.size() < topK) {
+                top.add(rankKey);
+            } else if (rankKey < top.last()) {
+                top.add(rankKey);
+                top.pollLast();
+            }
+        }
+    }
+}
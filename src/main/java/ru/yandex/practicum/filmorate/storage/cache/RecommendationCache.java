@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
+import ru.yandex.practicum.filmorate.storage.dal.dto.RecommendationCacheStatsDto;
+
+import java.util.*;
+
+// Кеш рекомендаций по пользователям: LRU с ограничением размера и TTL.
+// Лайк (userId, filmId) сбрасывает записи самого userId, пользователей, лайкнувших filmId
+// (у них изменилось пересечение с userId), и тех, для кого userId был одним из соседей
+@Component
+@Slf4j
+public class RecommendationCache {
+
+    // Сколько последних лайков помнить, чтобы не положить в кеш результат, устаревший во время расчёта
+    private static final int RECENT_LIKES = 1024;
+
+    private final LikeIndex likeIndex;
+    private final int maxSize;
+    private final long ttlMs;
+
+    private final LinkedHashMap<Integer, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Set<Integer>> dependentsByNeighbour = new HashMap<>();
+    private final ArrayDeque<RecentLike> recentLikes = new ArrayDeque<>();
+    private long version;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    public RecommendationCache(LikeIndex likeIndex,
+                               @Value("${filmorate.recommendations.cache.max-size:10000}") int maxSize,
+                               @Value("${filmorate.recommendations.cache.ttl-ms:600000}") long ttlMs) {
+        this.likeIndex = likeIndex;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+    }
+
+    public synchronized Optional<List<Integer>> get(int userId) {
+        Entry entry = entries.get(userId);
+        if (entry == null) {
+            misses++;
+            return Optional.empty();
+        }
+        if (entry.expiresAt <= System.currentTimeMillis()) {
+            remove(userId);
+            expirations++;
+            misses++;
+            return Optional.empty();
+        }
+        hits++;
+        return Optional.of(entry.filmIds);
+    }
+
+    // Номер последнего учтённого лайка — берётся до расчёта и передаётся в put
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized void put(int userId, List<Integer> filmIds, int[] neighbourIds, long computedAtVersion) {
+        if (maxSize <= 0 || isStale(userId, neighbourIds, computedAtVersion)) {
+            return;
+        }
+        remove(userId);
+        entries.put(userId, new Entry(filmIds, neighbourIds, System.currentTimeMillis() + ttlMs));
+        for (int neighbourId : neighbourIds) {
+            dependentsByNeighbour.computeIfAbsent(neighbourId, k -> new HashSet<>()).add(userId);
+        }
+        while (entries.size() > maxSize) {
+            remove(entries.keySet().iterator().next());
+            evictions++;
+        }
+    }
+
+    public synchronized RecommendationCacheStatsDto getStats() {
+        long requests = hits + misses;
+        return new RecommendationCacheStatsDto(entries.size(), maxSize, ttlMs, hits, misses, evictions,
+                expirations, invalidations, requests == 0 ? 0 : (double) hits / requests);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onLike(LikeEvent event) {
+        int userId = event.getUserId();
+        int filmId = event.getFilmId();
+        recentLikes.addLast(new RecentLike(++version, userId, filmId));
+        if (recentLikes.size() > RECENT_LIKES) {
+            recentLikes.removeFirst();
+        }
+
+        invalidate(userId);
+        for (Integer dependent : List.copyOf(dependentsByNeighbour.getOrDefault(userId, Set.of()))) {
+            invalidate(dependent);
+        }
+        // Проверяем меньшую из сторон: записи кеша или пользователей, лайкнувших фильм
+        int[] likers = likeIndex.getUsersWhoLiked(filmId);
+        if (likers.length < entries.size()) {
+            for (int likerId : likers) {
+                invalidate(likerId);
+            }
+        } else {
+            for (Integer cachedUserId : List.copyOf(entries.keySet())) {
+                if (Arrays.binarySearch(likeIndex.getFilmsLikedBy(cachedUserId), filmId) >= 0) {
+                    invalidate(cachedUserId);
+                }
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilm(FilmEvent event) {
+        if (event.getOperation() == Operation.REMOVE && !entries.isEmpty()) {
+            invalidations += entries.size();
+            entries.clear();
+            dependentsByNeighbour.clear();
+            version++;
+            recentLikes.clear();
+        }
+    }
+
+    // Результат устарел, если после начала расчёта лайкал сам пользователь, его сосед или
+    // кто-то лайкнул фильм из его лайков; если история уже вытеснена — считаем устаревшим
+    private boolean isStale(int userId, int[] neighbourIds, long computedAtVersion) {
+        if (computedAtVersion == version) {
+            return false;
+        }
+        if (recentLikes.isEmpty() || recentLikes.peekFirst().version > computedAtVersion + 1) {
+            return true;
+        }
+        int[] liked = likeIndex.getFilmsLikedBy(userId);
+        for (RecentLike like : recentLikes) {
+            if (like.version <= computedAtVersion) {
+                continue;
+            }
+            if (like.userId == userId || Arrays.binarySearch(liked, like.filmId) >= 0) {
+                return true;
+            }
+            for (int neighbourId : neighbourIds) {
+                if (neighbourId == like.userId) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void invalidate(int userId) {
+        if (remove(userId)) {
+            invalidations++;
+        }
+    }
+
+    private boolean remove(int userId) {
+        Entry entry = entries.remove(userId);
+        if (entry == null) {
+            return false;
+        }
+        for (int neighbourId : entry.neighbourIds) {
+            Set<Integer> dependents = dependentsByNeighbour.get(neighbourId);
+            if (dependents != null) {
+                dependents.remove(userId);
+                if (dependents.isEmpty()) {
+                    dependentsByNeighbour.remove(neighbourId);
+                }
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final List<Integer> filmIds;
+        private final int[] neighbourIds;
+        private final long expiresAt;
+
+        private Entry(List<Integer> filmIds, int[] neighbourIds, long expiresAt) {
+            this.filmIds = filmIds;
+            this.neighbourIds = neighbourIds;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class RecentLike {
+        private final long version;
+        private final int userId;
+        private final int filmId;
+
+        private RecentLike(long version, int userId, int filmId) {
+            this.version = version;
+            this.userId = userId;
+            this.filmId = filmId;
+        }
+    }
+}
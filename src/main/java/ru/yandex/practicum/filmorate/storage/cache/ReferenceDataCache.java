@@ -0,0 +1,101 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.dal.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.dal.mappers.MpaRowMapper;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+// Справочники жанров и рейтингов MPA в памяти. Таблицы маленькие и почти не меняются,
+// поэтому загружаются при старте в массивы по id; при изменении строк нужно вызвать refresh()
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReferenceDataCache {
+
+    private final JdbcTemplate jdbc;
+    private final GenreRowMapper mapperGenre;
+    private final MpaRowMapper mapperMpa;
+
+    private volatile Snapshot snapshot = new Snapshot(new Genre[0], new Mpa[0]);
+
+    @PostConstruct
+    public void refresh() {
+        List<Genre> genres = jdbc.query("SELECT * FROM genres", mapperGenre);
+        List<Mpa> mpas = jdbc.query("SELECT * FROM mpas", mapperMpa);
+
+        Genre[] genresById = new Genre[genres.stream().mapToInt(Genre::getId).max().orElse(0) + 1];
+        for (Genre genre : genres) {
+            genresById[genre.getId()] = genre;
+        }
+        Mpa[] mpasById = new Mpa[mpas.stream().mapToInt(Mpa::getId).max().orElse(0) + 1];
+        for (Mpa mpa : mpas) {
+            mpasById[mpa.getId()] = mpa;
+        }
+
+        snapshot = new Snapshot(genresById, mpasById);
+        log.info("Загружены справочники: жанров {}, рейтингов {}", genres.size(), mpas.size());
+    }
+
+    public Optional<Genre> findGenre(int genreId) {
+        Genre[] genresById = snapshot.genresById;
+        return genreId >= 0 && genreId < genresById.length
+                ? Optional.ofNullable(genresById[genreId])
+                : Optional.empty();
+    }
+
+    public Genre getGenre(int genreId) {
+        return findGenre(genreId).orElseThrow(() -> new NotFoundException("Жанр с таким id не существует"));
+    }
+
+    public List<Genre> getGenres() {
+        return snapshot.genres;
+    }
+
+    public Optional<Mpa> findMpa(int mpaId) {
+        Mpa[] mpasById = snapshot.mpasById;
+        return mpaId >= 0 && mpaId < mpasById.length
+                ? Optional.ofNullable(mpasById[mpaId])
+                : Optional.empty();
+    }
+
+    public Mpa getMpa(int mpaId) {
+        return findMpa(mpaId).orElseThrow(() -> new NotFoundException("Рейтинг с таким id не существует"));
+    }
+
+    public List<Mpa> getMpas() {
+        return snapshot.mpas;
+    }
+
+    // Неизменяемый снимок справочников, подменяется целиком при refresh()
+    private static final class Snapshot {
+        private final Genre[] genresById;
+        private final Mpa[] mpasById;
+        private final List<Genre> genres;
+        private final List<Mpa> mpas;
+
+        private Snapshot(Genre[] genresById, Mpa[] mpasById) {
+            this.genresById = genresById;
+            this.mpasById = mpasById;
+            this.genres = Arrays.stream(genresById)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingInt(Genre::getId))
+                    .toList();
+            this.mpas = Arrays.stream(mpasById)
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingInt(Mpa::getId))
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FriendEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Граф дружбы в памяти: для каждого пользователя отсортированный массив id тех, кого он добавил в друзья
+// (строки friends с requester_id = пользователь), и обратный — тех, кто добавил в друзья его.
+// Массивы подменяются целиком, чтение идёт без блокировок
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SocialGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbc;
+
+    private final Map<Integer, int[]> friendsByUser = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> followersByUser = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Integer, LikeIndex.IntList> loaded = new HashMap<>();
+        Map<Integer, LikeIndex.IntList> loadedFollowers = new HashMap<>();
+        jdbc.query("SELECT requester_id, addressee_id FROM friends", (RowCallbackHandler) rs -> {
+            int requesterId = rs.getInt("requester_id");
+            int addresseeId = rs.getInt("addressee_id");
+            loaded.computeIfAbsent(requesterId, k -> new LikeIndex.IntList()).add(addresseeId);
+            loadedFollowers.computeIfAbsent(addresseeId, k -> new LikeIndex.IntList()).add(requesterId);
+        });
+
+        friendsByUser.clear();
+        followersByUser.clear();
+        loaded.forEach((userId, friends) -> friendsByUser.put(userId, friends.toSortedArray()));
+        loadedFollowers.forEach((userId, followers) -> followersByUser.put(userId, followers.toSortedArray()));
+        ready = true;
+        log.info("Граф дружбы построен: пользователей {}, связей {}, {} мс", friendsByUser.size(),
+                friendsByUser.values().stream().mapToLong(friends -> friends.length).sum(),
+                System.currentTimeMillis() - start);
+    }
+
+    // Общие друзья по возрастанию id; пустой Optional — граф ещё не построен
+    public Optional<int[]> getMutualFriends(int userId, int otherUserId) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        return Optional.of(LikeIndex.intersect(friendsOf(userId), friendsOf(otherUserId)));
+    }
+
+    // Друзья друзей, которых пользователь ещё не добавил, по убыванию числа общих друзей, затем по id
+    public Optional<int[]> getSuggestions(int userId, int count) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        int[] friends = friendsOf(userId);
+        int total = 0;
+        for (int friendId : friends) {
+            total += friendsOf(friendId).length;
+        }
+        // Все вторые связи одним массивом: после сортировки длина серии одинаковых id — число общих друзей
+        int[] contacts = new int[total];
+        int size = 0;
+        for (int friendId : friends) {
+            int[] second = friendsOf(friendId);
+            System.arraycopy(second, 0, contacts, size, second.length);
+            size += second.length;
+        }
+        Arrays.sort(contacts);
+
+        long[] ranked = new long[size];
+        int candidates = 0;
+        for (int i = 0; i < size; ) {
+            int contactId = contacts[i];
+            int j = i;
+            while (j < size && contacts[j] == contactId) {
+                j++;
+            }
+            if (contactId != userId && Arrays.binarySearch(friends, contactId) < 0) {
+                ranked[candidates++] = rankKey(j - i, contactId);
+            }
+            i = j;
+        }
+        Arrays.sort(ranked, 0, candidates);
+
+        int[] result = new int[Math.min(count, candidates)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return Optional.of(result);
+    }
+
+    // Кто добавил пользователя в друзья — им уходят его события в ленту друзей
+    public int[] getFollowers(int userId) {
+        return followersByUser.getOrDefault(userId, EMPTY);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    private int[] friendsOf(int userId) {
+        return friendsByUser.getOrDefault(userId, EMPTY);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFriend(FriendEvent event) {
+        if (!ready) {
+            return;
+        }
+        boolean add = event.getOperation() == Operation.ADD;
+        update(friendsByUser, event.getRequesterId(), event.getAddresseeId(), add);
+        update(followersByUser, event.getAddresseeId(), event.getRequesterId(), add);
+    }
+
+    private static void update(Map<Integer, int[]> index, int key, int value, boolean add) {
+        int[] values = index.getOrDefault(key, EMPTY);
+        int[] updated = add ? LikeIndex.insert(values, value) : LikeIndex.remove(values, value);
+        if (updated.length == 0) {
+            index.remove(key);
+        } else if (updated != values) {
+            index.put(key, updated);
+        }
+    }
+
+    // Ключ ранжирования: по возрастанию ключа — больше общих друзей, затем меньший id
+    private static long rankKey(int mutualFriends, int userId) {
+        return ((long) (Integer.MAX_VALUE - mutualFriends) << 32) | (userId & 0xFFFFFFFFL);
+    }
+}
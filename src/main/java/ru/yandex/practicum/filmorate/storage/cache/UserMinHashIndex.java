@@ -0,0 +1,204 @@
+package ru.yandex.practicum.filmorate.storage.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
+
+import java.util.*;
+
+// MinHash-подписи множеств лайков пользователей и LSH-корзины по полосам подписи для
+// приближённого поиска похожих пользователей. Подпись — bands * rows минимумов хешей id фильмов;
+// пользователи с совпадающей полосой попадают в одну корзину. Вероятность стать кандидатом
+// для пары с мерой Жаккара J: 1 - (1 - J^rows)^bands. Включается filmorate.recommendations.approximate=true
+@Component
+@Slf4j
+public class UserMinHashIndex {
+
+    private final JdbcTemplate jdbc;
+    private final LikeIndex likeIndex;
+    private final boolean enabled;
+    private final int bands;
+    private final int rows;
+    private final long[] hashSeeds;
+
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final List<Map<Long, Set<Integer>>> buckets = new ArrayList<>();
+    private boolean ready;
+
+    public UserMinHashIndex(JdbcTemplate jdbc, LikeIndex likeIndex,
+                            @Value("${filmorate.recommendations.approximate:false}") boolean enabled,
+                            @Value("${filmorate.recommendations.lsh.bands:32}") int bands,
+                            @Value("${filmorate.recommendations.lsh.rows:2}") int rows) {
+        this.jdbc = jdbc;
+        this.likeIndex = likeIndex;
+        this.enabled = enabled;
+        this.bands = bands;
+        this.rows = rows;
+        this.hashSeeds = new SplittableRandom(42).longs(bands * rows).toArray();
+        for (int i = 0; i < bands; i++) {
+            buckets.add(new HashMap<>());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        signatures.clear();
+        buckets.forEach(Map::clear);
+
+        jdbc.query("SELECT user_id, film_id FROM likes", (RowCallbackHandler) rs -> {
+            int[] signature = signatures.computeIfAbsent(rs.getInt("user_id"), k -> emptySignature());
+            addToSignature(signature, rs.getInt("film_id"));
+        });
+        signatures.forEach(this::addToBuckets);
+        ready = true;
+        log.info("LSH-индекс пользователей построен: пользователей {}, полос {} x {} строк, {} мс",
+                signatures.size(), bands, rows, System.currentTimeMillis() - start);
+    }
+
+    public synchronized boolean isReady() {
+        return ready;
+    }
+
+    // Пользователи, у которых хотя бы одна полоса подписи совпала с полосой userId
+    public synchronized Set<Integer> getCandidates(int userId) {
+        int[] signature = signatures.get(userId);
+        if (signature == null) {
+            return Set.of();
+        }
+        Set<Integer> candidates = new HashSet<>();
+        for (int band = 0; band < bands; band++) {
+            Set<Integer> bucket = buckets.get(band).get(bandKey(signature, band));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        candidates.remove(userId);
+        return candidates;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onLike(LikeEvent event) {
+        if (!ready) {
+            return;
+        }
+        int userId = event.getUserId();
+        int[] old = signatures.get(userId);
+        if (old != null) {
+            removeFromBuckets(userId, old);
+        }
+
+        int[] signature;
+        if (event.getOperation() == Operation.ADD) {
+            // Минимум только уменьшается — достаточно учесть новый фильм
+            signature = old == null ? emptySignature() : old.clone();
+            addToSignature(signature, event.getFilmId());
+        } else {
+            // После удаления минимум не восстановить — подпись пересчитывается по лайкам пользователя
+            signature = signatureOf(likeIndex.getFilmsLikedBy(userId), event.getFilmId());
+        }
+        if (signature == null) {
+            signatures.remove(userId);
+        } else {
+            signatures.put(userId, signature);
+            addToBuckets(userId, signature);
+        }
+    }
+
+    // Лайки удалённого фильма исчезают без LikeEvent — пересчитываем подписи только тех, кто его лайкал
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onFilm(FilmEvent event) {
+        if (!ready || event.getOperation() != Operation.REMOVE) {
+            return;
+        }
+        for (int userId : event.getLikerIds()) {
+            int[] old = signatures.get(userId);
+            if (old == null) {
+                continue;
+            }
+            removeFromBuckets(userId, old);
+            int[] signature = signatureOf(likeIndex.getFilmsLikedBy(userId), event.getFilmId());
+            if (signature == null) {
+                signatures.remove(userId);
+            } else {
+                signatures.put(userId, signature);
+                addToBuckets(userId, signature);
+            }
+        }
+    }
+
+    // Подпись множества films без excludedFilmId; null — множество пустое
+    private int[] signatureOf(int[] films, int excludedFilmId) {
+        int[] signature = null;
+        for (int filmId : films) {
+            if (filmId == excludedFilmId) {
+                continue;
+            }
+            if (signature == null) {
+                signature = emptySignature();
+            }
+            addToSignature(signature, filmId);
+        }
+        return signature;
+    }
+
+    private int[] emptySignature() {
+        int[] signature = new int[bands * rows];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        return signature;
+    }
+
+    private void addToSignature(int[] signature, int filmId) {
+        for (int i = 0; i < signature.length; i++) {
+            signature[i] = Math.min(signature[i], hash(filmId, hashSeeds[i]));
+        }
+    }
+
+    private void addToBuckets(int userId, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            buckets.get(band).computeIfAbsent(bandKey(signature, band), k -> new HashSet<>()).add(userId);
+        }
+    }
+
+    private void removeFromBuckets(int userId, int[] signature) {
+        for (int band = 0; band < bands; band++) {
+            Map<Long, Set<Integer>> bandBuckets = buckets.get(band);
+            long key = bandKey(signature, band);
+            Set<Integer> bucket = bandBuckets.get(key);
+            if (bucket != null) {
+                bucket.remove(userId);
+                if (bucket.isEmpty()) {
+                    bandBuckets.remove(key);
+                }
+            }
+        }
+    }
+
+    private long bandKey(int[] signature, int band) {
+        long key = 1;
+        for (int i = band * rows; i < (band + 1) * rows; i++) {
+            key = key * 1_000_003L + signature[i];
+        }
+        return key;
+    }
+
+    // Перемешивание splitmix64 — своя хеш-функция на каждый seed
+    private static int hash(int value, long seed) {
+        long z = value + seed;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z = z ^ (z >>> 31);
+        return (int) (z >>> 33);
+    }
+}
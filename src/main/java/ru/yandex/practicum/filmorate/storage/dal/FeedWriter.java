@@ -0,0 +1,268 @@
+package ru.yandex.practicum.filmorate.storage.dal;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.yandex.practicum.filmorate.exception.ServiceUnavailableException;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.event.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.cache.FriendTimeline;
+import ru.yandex.practicum.filmorate.storage.dal.dto.FeedWriterStatsDto;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Отложенная запись ленты событий: события копятся в неблокирующей очереди
+// и пишутся пакетами — по накоплении batch-size событий или раз в flush-interval-ms.
+// Запись идёт только в отдельном потоке: вне транзакций вызывающих, после фиксации их изменений.
+// Событие приходит после фиксации, но ещё на соединении транзакции, поэтому здесь вызывающий не ждёт
+// и событие всегда принимается. Очередь ограничивают сервисы: до начала транзакции они вызывают
+// awaitCapacity(), и если место не освободилось за backpressure-timeout-ms, запрос завершается с 503.
+// Очередь живёт в памяти: при аварийной остановке процесса ещё не записанные события теряются,
+// при штатной остановке они дописываются
+// Записанные события с присвоенными event_id раскладываются по лентам друзей
+@Component
+@Slf4j
+public class FeedWriter {
+
+    private static final String INSERT_FEED_SQL = "INSERT INTO feed(user_id, entity_id, event_type_id, " +
+            "operation_id, event_time) VALUES(?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbc;
+    private final FriendTimeline friendTimeline;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long backpressureTimeoutMs;
+    private final int highWatermark;
+
+    private final ConcurrentLinkedQueue<FeedEvent> queue = new ConcurrentLinkedQueue<>();
+    // Занятые места в очереди: учитываются до добавления, освобождаются при выборке
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "feed-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    // Уведомляется потоком feed-writer, когда выборка освободила место в очереди
+    private final Object capacityFreed = new Object();
+    private final AtomicLong flushNanos = new AtomicLong();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    public FeedWriter(JdbcTemplate jdbc, FriendTimeline friendTimeline,
+                      @Value("${filmorate.feed.queue-capacity:10000}") int queueCapacity,
+                      @Value("${filmorate.feed.batch-size:500}") int batchSize,
+                      @Value("${filmorate.feed.backpressure-timeout-ms:1000}") long backpressureTimeoutMs) {
+        this.jdbc = jdbc;
+        this.friendTimeline = friendTimeline;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.backpressureTimeoutMs = backpressureTimeoutMs;
+        this.highWatermark = Math.max(1, queueCapacity - batchSize);
+    }
+
+    // Вызывается сервисами до транзакции, порождающей событие ленты: когда до заполнения очереди
+    // остаётся меньше пакета, ждёт не дольше backpressure-timeout-ms, пока поток feed-writer её разгрузит,
+    // а не дождавшись — отклоняет запрос, пока изменения ещё не внесены.
+    // Оставленный запас — для событий транзакций, которые уже прошли проверку
+    public void awaitCapacity() {
+        if (depth.get() < highWatermark) {
+            return;
+        }
+        backpressureWaits.incrementAndGet();
+        requestFlush();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backpressureTimeoutMs);
+        synchronized (capacityFreed) {
+            while (depth.get() >= highWatermark) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw reject("очередь ленты событий заполнена");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(capacityFreed, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject("ожидание места в очереди ленты событий прервано");
+                }
+            }
+        }
+    }
+
+    // Не блокируется и не отбрасывает событие: изменение уже зафиксировано.
+    // Вместимость очереди — мягкая граница, её соблюдает awaitCapacity()
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFeed(FeedEvent event) {
+        int current = depth.incrementAndGet();
+        queue.offer(event);
+        enqueued.incrementAndGet();
+        if (current > queueCapacity) {
+            log.warn("Очередь ленты событий превысила вместимость: {} из {}", current, queueCapacity);
+        }
+
+        if (current >= batchSize) {
+            requestFlush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.flush-interval-ms:200}")
+    public void flushPeriodically() {
+        if (depth.get() > 0) {
+            requestFlush();
+        }
+    }
+
+    // Синхронно дописывает всё, что уже в очереди: перед чтением ленты; вызывающий не должен держать соединение
+    public void flush() {
+        try {
+            flusher.submit(this::drain).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Ошибка записи ленты событий", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flush();
+        flusher.shutdown();
+        if (!flusher.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Запись ленты событий не завершилась, в очереди осталось {} событий", depth.get());
+        }
+    }
+
+    public FeedWriterStatsDto getStats() {
+        long count = flushes.get();
+        return new FeedWriterStatsDto(depth.get(), queueCapacity, enqueued.get(), written.get(), failed.get(),
+                count, backpressureWaits.get(), rejected.get(), toMillis(lastFlushNanos), toMillis(maxFlushNanos),
+                count == 0 ? 0 : toMillis(flushNanos.get()) / count);
+    }
+
+    private ServiceUnavailableException reject(String reason) {
+        rejected.incrementAndGet();
+        log.warn("Запрос отклонён: {}, в очереди {} событий", reason, depth.get());
+        return new ServiceUnavailableException("Лента событий перегружена, повторите запрос позже");
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushRequested.set(false);
+                drain();
+            });
+        }
+    }
+
+    // Выполняется только в потоке feed-writer
+    private void drain() {
+        List<FeedEvent> batch = new ArrayList<>(batchSize);
+        while (true) {
+            FeedEvent event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            depth.addAndGet(-batch.size());
+            synchronized (capacityFreed) {
+                capacityFreed.notifyAll();
+            }
+
+            long start = System.nanoTime();
+            write(batch);
+            long elapsed = System.nanoTime() - start;
+            flushes.incrementAndGet();
+            flushNanos.addAndGet(elapsed);
+            lastFlushNanos = elapsed;
+            maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+            batch.clear();
+        }
+    }
+
+    private void write(List<FeedEvent> batch) {
+        List<Feed> stored = new ArrayList<>(batch.size());
+        try {
+            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FEED_SQL, new String[]{"event_id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            setFeedParameters(ps, batch.get(i));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return batch.size();
+                        }
+                    }, keyHolder);
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < batch.size(); i++) {
+                stored.add(toFeed(batch.get(i), ((Number) keys.get(i).values().iterator().next()).intValue()));
+            }
+        } catch (DataAccessException e) {
+            // Пакет целиком не записался (например, пользователь уже удалён) — пишем по одному, пропуская ошибочные
+            log.warn("Пакет ленты событий из {} записей не записан, повтор по одной: {}", batch.size(), e.getMessage());
+            for (FeedEvent event : batch) {
+                try {
+                    GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+                    jdbc.update(connection -> {
+                        PreparedStatement ps = connection.prepareStatement(INSERT_FEED_SQL, new String[]{"event_id"});
+                        setFeedParameters(ps, event);
+                        return ps;
+                    }, keyHolder);
+                    stored.add(toFeed(event, keyHolder.getKeyAs(Integer.class)));
+                } catch (DataAccessException rowError) {
+                    failed.incrementAndGet();
+                    log.error("Событие ленты не записано: {}", event, rowError);
+                }
+            }
+        }
+        written.addAndGet(stored.size());
+        friendTimeline.onWritten(stored);
+    }
+
+    private static void setFeedParameters(PreparedStatement ps, FeedEvent event) throws SQLException {
+        ps.setInt(1, event.getUserId());
+        ps.setInt(2, event.getEntityId());
+        ps.setInt(3, event.getEventType().getId());
+        ps.setInt(4, event.getOperation().getId());
+        ps.setTimestamp(5, Timestamp.valueOf(event.getTimestamp()));
+    }
+
+    private static Feed toFeed(FeedEvent event, int eventId) {
+        return new Feed(eventId, event.getEventType(), event.getOperation(), event.getUserId(), event.getEntityId(),
+                event.getTimestamp());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
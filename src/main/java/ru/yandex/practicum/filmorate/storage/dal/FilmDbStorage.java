@@ -3,58 +3,63 @@ package ru.yandex.practicum.filmorate.storage.dal;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.Mpa;
 import ru.yandex.practicum.filmorate.model.enumModels.EventType;
 import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.DirectorEvent;
+import ru.yandex.practicum.filmorate.model.event.FeedEvent;
+import ru.yandex.practicum.filmorate.model.event.FilmEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
 import ru.yandex.practicum.filmorate.storage.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityIdIndex;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
 import ru.yandex.practicum.filmorate.storage.dal.mappers.FilmRowMapper;
-import ru.yandex.practicum.filmorate.storage.dal.mappers.GenreRowMapper;
-import ru.yandex.practicum.filmorate.storage.dal.mappers.MpaRowMapper;
 
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Component
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
 
     public static final Logger log = LoggerFactory.getLogger(FilmDbStorage.class);
+    // Максимальное число id в одном IN-списке при догрузке связей
+    private static final int IN_CHUNK_SIZE = 500;
+    // Размер JDBC-пакета при записи связей фильма
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT_FILM_SQL = "INSERT INTO films (name, description, releaseDate, duration, mpa_id) " +
+            "VALUES (?, ?, ?, ?, ?)";
     private final JdbcTemplate jdbc;
     private final FilmRowMapper mapper;
-    private final GenreRowMapper mapperGenre;
-    private final MpaRowMapper mapperMpa;
+    private final ReferenceDataCache referenceData;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityIdIndex idIndex;
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
-        getMpaById(film.getMpa().getId());
+        validateReferences(film);
 
-        if (film.getGenres() != null) {
-            for (Genre genre : film.getGenres()) {
-                getGenreById(genre.getId());
-            }
-        }
-
-        String sql = "INSERT INTO films (name, description, releaseDate, duration, mpa_id) " +
-                "VALUES (?, ?, ?, ?, ?)";
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
 
         jdbc.update(connection -> {
-            var ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, film.getName());
-            ps.setString(2, film.getDescription());
-            ps.setDate(3, java.sql.Date.valueOf(film.getReleaseDate()));
-            ps.setInt(4, film.getDuration());
-            ps.setInt(5, film.getMpa().getId());
+            var ps = connection.prepareStatement(INSERT_FILM_SQL, Statement.RETURN_GENERATED_KEYS);
+            setFilmParameters(ps, film);
             return ps;
         }, keyHolder);
 
@@ -62,67 +67,83 @@ public class FilmDbStorage implements FilmStorage {
         if (generatedId != null) {
             film.setId(generatedId);
 
-            // Сохраняем жанры
-            Set<Genre> genres = film.getGenres();
-            if (genres != null) {
-                for (Genre genre : genres) {
-                    addGenre(film.getId(), genre);
-                }
-            }
-
-            // Сохраняем лайки
-            Set<Integer> likes = film.getLikes();
-            if (likes != null) {
-                for (Integer userId : likes) {
-                    addLike(film.getId(), userId);
-                }
-            }
-
-            // Сохраняем режиссёров
-            Set<Director> directors = film.getDirectors();
-            if (directors != null) {
-                addDirectors(film.getId(), directors);
-            }
+            // Связи нового фильма пишем пакетами
+            insertAssociations("film_genre", "genre_id", film.getId(), genreIds(film));
+            insertAssociations("film_director", "director_id", film.getId(), directorIds(film));
 
+            eventPublisher.publishEvent(new FilmEvent(film.getId(), film, Operation.ADD));
             return film;
         } else {
             throw new RuntimeException("Не удалось сохранить фильм — id не сгенерирован");
         }
     }
 
+    // Пакетная вставка уже проверенных фильмов (жанры, MPA и режиссёры должны существовать):
+    // один JDBC-пакет на фильмы с получением сгенерированных id и по одному на жанры и режиссёров
+    @Transactional
+    public void addFilms(List<Film> films) {
+        if (films.isEmpty()) {
+            return;
+        }
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.batchUpdate(connection -> connection.prepareStatement(INSERT_FILM_SQL, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setFilmParameters(ps, films.get(i));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return films.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != films.size()) {
+            throw new RuntimeException("Не удалось сохранить фильмы — получено " + keys.size() +
+                    " id на " + films.size() + " фильмов");
+        }
+        List<int[]> genreRows = new ArrayList<>();
+        List<int[]> directorRows = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            film.setId(((Number) keys.get(i).values().iterator().next()).intValue());
+            genreIds(film).forEach(genreId -> genreRows.add(new int[]{film.getId(), genreId}));
+            directorIds(film).forEach(directorId -> directorRows.add(new int[]{film.getId(), directorId}));
+        }
+        insertAssociationRows("film_genre", "genre_id", genreRows);
+        insertAssociationRows("film_director", "director_id", directorRows);
+
+        films.forEach(film -> eventPublisher.publishEvent(new FilmEvent(film.getId(), film, Operation.ADD)));
+    }
+
+    private static void setFilmParameters(PreparedStatement ps, Film film) throws SQLException {
+        ps.setString(1, film.getName());
+        ps.setString(2, film.getDescription());
+        ps.setDate(3, java.sql.Date.valueOf(film.getReleaseDate()));
+        ps.setInt(4, film.getDuration());
+        ps.setInt(5, film.getMpa().getId());
+    }
+
     @Override
+    @Transactional
     public Film updateFilm(Film film) {
         String sql = "UPDATE films SET name = ?, description = ?, releaseDate = ?, " +
                 "duration = ?, mpa_id = ? WHERE film_id = ?";
-        if (findFilmById(film.getId()).isEmpty()) {
-            throw new NotFoundException("Фильм с id=" + film.getId() + " не найден");
-        }
+        Film stored = findFilmById(film.getId()).orElseThrow(() ->
+                new NotFoundException("Фильм с id=" + film.getId() + " не найден"));
+        validateReferences(film);
 
         jdbc.update(sql, film.getName(), film.getDescription(), film.getReleaseDate(),
                 film.getDuration(), film.getMpa().getId(), film.getId());
 
-        // Удаляем старые жанры и добавляем новые
-        jdbc.update("DELETE FROM film_genre WHERE film_id = ?", film.getId());
-        if (film.getGenres() != null) {
-            for (Genre genre : film.getGenres()) {
-                addGenre(film.getId(), genre);
-            }
-        }
-
-        // Удаляем старые лайки и добавляем новые
-        jdbc.update("DELETE FROM likes WHERE film_id = ?", film.getId());
-        if (film.getLikes() != null) {
-            for (Integer userId : film.getLikes()) {
-                addLike(film.getId(), userId);
-            }
-        }
-
-        // Удаляем старых режиссёров и добавляем новых
-        deleteDirectors(film.getId());
-        if (film.getDirectors() != null) {
-            addDirectors(film.getId(), film.getDirectors());
-        }
+        // Пишем только разницу между сохранёнными и пришедшими связями.
+        // Лайки меняются только через addLike/removeLike: FilmDto их не передаёт
+        syncAssociations("film_genre", "genre_id", film.getId(), genreIds(stored), genreIds(film));
+        syncAssociations("film_director", "director_id", film.getId(), directorIds(stored), directorIds(film));
 
+        eventPublisher.publishEvent(new FilmEvent(film.getId(), film, Operation.UPDATE));
         return film;
     }
 
@@ -131,28 +152,41 @@ public class FilmDbStorage implements FilmStorage {
         String sql = "SELECT * FROM films";
         List<Film> films = jdbc.query(sql, mapper);
 
-        enrichFilms(films);
+        // Выгружаем весь каталог, поэтому связи тоже читаем целыми таблицами
+        enrichAllFilms(films);
 
-        for (Film film : films) {
-            addNameMpa(film);
-            film.setDirectors(getDirectorsOfFilm(film.getId())); // Получаем режиссёров
-        }
+        return films;
+    }
+
+    // Потоковая выгрузка каталога keyset-страницами: каждая страница читается и дополняется связями
+    // целиком до передачи потребителю, поэтому соединение не удерживается, пока ответ пишется клиенту,
+    // а в памяти одновременно находится не больше одной страницы фильмов
+    public void forEachFilm(Consumer<Film> consumer) {
+        int afterId = 0;
+        List<Film> page;
+        do {
+            page = getFilmsPage(afterId, IN_CHUNK_SIZE);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == IN_CHUNK_SIZE);
+    }
 
+    @Override
+    public List<Film> getFilmsPage(int afterId, int limit) {
+        String sql = "SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?";
+        List<Film> films = jdbc.query(sql, mapper, afterId, limit);
+        enrichFilms(films);
         return films;
     }
 
     @Override
     public Optional<Film> findFilmById(int id) {
-        String sql = "SELECT f.*, d.director_id AS director_id, d.name AS director_name " +
-                "FROM films f " +
-                "LEFT JOIN film_director fd ON f.film_id = fd.film_id " +
-                "LEFT JOIN directors d ON fd.director_id = d.director_id " +
-                "WHERE f.film_id = ?";
+        String sql = "SELECT * FROM films WHERE film_id = ?";
         try {
             Film result = jdbc.queryForObject(sql, mapper, id);
-            result.setLikes(getLikes(id));
             result.setGenres(getGenresOfFilm(id));
-            addNameMpa(result);
             result.setDirectors(getDirectorsOfFilm(id));
             return Optional.ofNullable(result);
         } catch (EmptyResultDataAccessException ignored) {
@@ -160,12 +194,29 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
+    @Override
+    public boolean existsFilm(int id) {
+        if (idIndex.containsFilm(id)) {
+            return true;
+        }
+        long generation = idIndex.filmGeneration();
+        Boolean exists = jdbc.queryForObject("SELECT EXISTS(SELECT 1 FROM films WHERE film_id = ?)",
+                Boolean.class, id);
+        if (Boolean.TRUE.equals(exists)) {
+            idIndex.addFilm(id, generation);
+            return true;
+        }
+        return false;
+    }
+
     public void deleteFilmById(int filmId) {
         // Удаление зависимых записей из таблицы film_genre
         String deleteGenresSql = "DELETE FROM film_genre WHERE film_id = ?";
         jdbc.update(deleteGenresSql, filmId);
 
-        // Удаление записей из таблицы likes
+        // Удаление записей из таблицы likes; лайкнувшие уходят в событие для пересчёта индексов
+        int[] likerIds = jdbc.queryForList("SELECT user_id FROM likes WHERE film_id = ? ORDER BY user_id",
+                Integer.class, filmId).stream().mapToInt(Integer::intValue).toArray();
         String deleteLikesSql = "DELETE FROM likes WHERE film_id = ?";
         jdbc.update(deleteLikesSql, filmId);
 
@@ -177,33 +228,101 @@ public class FilmDbStorage implements FilmStorage {
         if (rowsAffected == 0) {
             throw new NotFoundException("Фильм с id " + filmId + " не найден.");
         }
+        eventPublisher.publishEvent(new FilmEvent(filmId, null, Operation.REMOVE, likerIds));
     }
 
+    @Transactional
     public void addLike(int filmId, int userId) {
         String checkSql = "SELECT COUNT(*) FROM likes WHERE film_id = ? AND user_id = ?";
         Integer count = jdbc.queryForObject(checkSql, Integer.class, filmId, userId);
-        UserDbStorage.addFeed(jdbc, userId, filmId, EventType.LIKE, Operation.ADD);
+        eventPublisher.publishEvent(FeedEvent.of(userId, filmId, EventType.LIKE, Operation.ADD));
 
         if (count == null || count == 0) {
             String insertSql = "INSERT INTO likes (film_id, user_id) VALUES (?, ?)";
             jdbc.update(insertSql, filmId, userId);
+            updateLikeCount(filmId, 1);
+            eventPublisher.publishEvent(new LikeEvent(filmId, userId, Operation.ADD));
         }
     }
 
+    @Transactional
     public void removeLike(int filmId, int userId) {
         String sql = "DELETE FROM likes WHERE film_id = ? AND user_id = ?";
-        jdbc.update(sql, filmId, userId);
-        UserDbStorage.addFeed(jdbc, userId, filmId, EventType.LIKE, Operation.REMOVE);
+        if (jdbc.update(sql, filmId, userId) > 0) {
+            updateLikeCount(filmId, -1);
+            eventPublisher.publishEvent(new LikeEvent(filmId, userId, Operation.REMOVE));
+        }
+        eventPublisher.publishEvent(FeedEvent.of(userId, filmId, EventType.LIKE, Operation.REMOVE));
+    }
+
+    private void updateLikeCount(int filmId, int delta) {
+        String sql = "UPDATE films SET like_count = like_count + ? WHERE film_id = ?";
+        jdbc.update(sql, delta, filmId);
+    }
+
+    // Постраничная выгрузка лайков фильма: id пользователей по возрастанию, после afterUserId
+    public List<Integer> getLikesPage(int filmId, int afterUserId, int limit) {
+        String sql = "SELECT user_id FROM likes WHERE film_id = ? AND user_id > ? ORDER BY user_id LIMIT ?";
+        return jdbc.queryForList(sql, Integer.class, filmId, afterUserId, limit);
+    }
+
+    private static Set<Integer> genreIds(Film film) {
+        Set<Integer> ids = new HashSet<>();
+        if (film.getGenres() != null) {
+            film.getGenres().forEach(genre -> ids.add(genre.getId()));
+        }
+        return ids;
+    }
+
+    private static Set<Integer> directorIds(Film film) {
+        Set<Integer> ids = new HashSet<>();
+        if (film.getDirectors() != null) {
+            film.getDirectors().forEach(director -> ids.add(director.getDirectorId()));
+        }
+        return ids;
+    }
+
+    // Приводит связи фильма в таблице table к incoming: удаляет и добавляет только изменившиеся строки
+    private void syncAssociations(String table, String column, int filmId,
+                                  Set<Integer> stored, Set<Integer> incoming) {
+        List<Integer> removed = stored.stream()
+                .filter(id -> !incoming.contains(id))
+                .toList();
+        List<Integer> added = incoming.stream()
+                .filter(id -> !stored.contains(id))
+                .toList();
+
+        if (!removed.isEmpty()) {
+            String sql = "DELETE FROM " + table + " WHERE film_id = ? AND " + column + " = ?";
+            jdbc.batchUpdate(sql, removed, BATCH_SIZE, (ps, id) -> {
+                ps.setInt(1, filmId);
+                ps.setInt(2, id);
+            });
+        }
+        insertAssociations(table, column, filmId, added);
     }
 
-    public Set<Integer> getLikes(int filmId) {
-        String sql = "SELECT user_id FROM likes WHERE film_id = ?";
-        return new HashSet<>(jdbc.queryForList(sql, Integer.class, filmId));
+    private void insertAssociations(String table, String column, int filmId, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + table + " (film_id, " + column + ") VALUES (?, ?)";
+        jdbc.batchUpdate(sql, ids, BATCH_SIZE, (ps, id) -> {
+            ps.setInt(1, filmId);
+            ps.setInt(2, id);
+        });
     }
 
-    public void addGenre(int filmId, Genre genre) {
-        String sql = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
-        jdbc.update(sql, filmId, genre.getId());
+    // Строки связей нескольких фильмов сразу: {film_id, id связанной сущности}
+    private void insertAssociationRows(String table, String column, List<int[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + table + " (film_id, " + column + ") VALUES (?, ?)";
+        jdbc.batchUpdate(sql, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setInt(1, row[0]);
+            ps.setInt(2, row[1]);
+        });
     }
 
     public void deleteGenre(int filmId, int genreId) {
@@ -212,13 +331,22 @@ public class FilmDbStorage implements FilmStorage {
     }
 
     public Set<Genre> getGenresOfFilm(int filmId) {
-        String sql = """
-                    SELECT g.genre_id, g.name
-                    FROM film_genre fg
-                    JOIN genres g ON fg.genre_id = g.genre_id
-                    WHERE fg.film_id = ?
-                """;
-        return new HashSet<>(jdbc.query(sql, mapperGenre, filmId));
+        String sql = "SELECT genre_id FROM film_genre WHERE film_id = ?";
+        Set<Genre> genres = new HashSet<>();
+        for (Integer genreId : jdbc.queryForList(sql, Integer.class, filmId)) {
+            genres.add(referenceData.getGenre(genreId));
+        }
+        return genres;
+    }
+
+    // Проверка жанров и рейтинга по справочникам в памяти, без запросов в БД
+    private void validateReferences(Film film) {
+        referenceData.getMpa(film.getMpa().getId());
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                referenceData.getGenre(genre.getId());
+            }
+        }
     }
 
     public List<Film> getPopularFilms(int count, int genreId, int year) {
@@ -237,62 +365,103 @@ public class FilmDbStorage implements FilmStorage {
 
         enrichFilms(films);
 
-        for (Film film : films) {
-            addNameMpa(film);
-        }
-
         return films;
     }
 
-    private void addNameMpa(Film film) {
-        int mpaId = film.getMpa().getId();
-        Mpa fullMpa = getMpaById(mpaId).orElseThrow(() ->
-                new NotFoundException("Рейтинг с id=" + mpaId + " не найден"));
-        film.setMpa(fullMpa);
+    private void enrichAllFilms(List<Film> films) {
+        Map<Integer, Set<Genre>> genresMap = getAllGenresGroupedByFilmId();
+        Map<Integer, Set<Director>> directorsMap = getAllDirectorsGroupedByFilmId();
+
+        applyEnrichment(films, genresMap, directorsMap);
     }
 
+    // Догружает связи только для фильмов из выборки — стоимость зависит от размера выборки, а не каталога
     private void enrichFilms(List<Film> films) {
-        Map<Integer, Set<Genre>> genresMap = getAllGenresGroupedByFilmId();
-        Map<Integer, Set<Integer>> likesMap = getAllLikesGroupedByFilmId();
-        Map<Integer, Set<Director>> directorsMap = getAllDirectorsGroupedByFilmId();
+        if (films.isEmpty()) {
+            return;
+        }
+        List<Integer> filmIds = films.stream()
+                .map(Film::getId)
+                .distinct()
+                .toList();
+
+        Map<Integer, Set<Genre>> genresMap = new HashMap<>();
+        Map<Integer, Set<Director>> directorsMap = new HashMap<>();
+
+        for (int from = 0; from < filmIds.size(); from += IN_CHUNK_SIZE) {
+            List<Integer> chunk = filmIds.subList(from, Math.min(from + IN_CHUNK_SIZE, filmIds.size()));
+            genresMap.putAll(getGenresGroupedByFilmIds(chunk));
+            directorsMap.putAll(getDirectorsGroupedByFilmIds(chunk));
+        }
+
+        applyEnrichment(films, genresMap, directorsMap);
+    }
 
+    private void applyEnrichment(List<Film> films,
+                                 Map<Integer, Set<Genre>> genresMap,
+                                 Map<Integer, Set<Director>> directorsMap) {
         for (Film film : films) {
             film.setGenres(genresMap.getOrDefault(film.getId(), Set.of()));
-            film.setLikes(likesMap.getOrDefault(film.getId(), Set.of()));
             film.setDirectors(directorsMap.getOrDefault(film.getId(), Set.of()));
         }
     }
 
-    private Map<Integer, Set<Genre>> getAllGenresGroupedByFilmId() {
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private Map<Integer, Set<Genre>> getGenresGroupedByFilmIds(List<Integer> filmIds) {
         String sql = """
-                    SELECT fg.film_id, g.genre_id, g.name
-                    FROM film_genre fg
-                    JOIN genres g ON fg.genre_id = g.genre_id
-                """;
+                    SELECT film_id, genre_id
+                    FROM film_genre
+                    WHERE film_id IN (%s)
+                """.formatted(placeholders(filmIds.size()));
 
         return jdbc.query(sql, rs -> {
             Map<Integer, Set<Genre>> result = new HashMap<>();
             while (rs.next()) {
                 int filmId = rs.getInt("film_id");
-                Genre genre = new Genre(
-                        rs.getInt("genre_id"),
+                Genre genre = referenceData.getGenre(rs.getInt("genre_id"));
+                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(genre);
+            }
+            return result;
+        }, filmIds.toArray());
+    }
+
+    private Map<Integer, Set<Director>> getDirectorsGroupedByFilmIds(List<Integer> filmIds) {
+        String sql = """
+                SELECT fd.film_id, d.director_id, d.name
+                FROM film_director fd
+                JOIN directors d ON fd.director_id = d.director_id
+                WHERE fd.film_id IN (%s)
+                """.formatted(placeholders(filmIds.size()));
+
+        return jdbc.query(sql, rs -> {
+            Map<Integer, Set<Director>> result = new HashMap<>();
+            while (rs.next()) {
+                int filmId = rs.getInt("film_id");
+                Director director = new Director(
+                        rs.getInt("director_id"),
                         rs.getString("name")
                 );
-                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(genre);
+                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(director);
             }
             return result;
-        });
+        }, filmIds.toArray());
     }
 
-    private Map<Integer, Set<Integer>> getAllLikesGroupedByFilmId() {
-        String sql = "SELECT film_id, user_id FROM likes";
+    private Map<Integer, Set<Genre>> getAllGenresGroupedByFilmId() {
+        String sql = """
+                    SELECT film_id, genre_id
+                    FROM film_genre
+                """;
 
         return jdbc.query(sql, rs -> {
-            Map<Integer, Set<Integer>> result = new HashMap<>();
+            Map<Integer, Set<Genre>> result = new HashMap<>();
             while (rs.next()) {
                 int filmId = rs.getInt("film_id");
-                int userId = rs.getInt("user_id");
-                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(userId);
+                Genre genre = referenceData.getGenre(rs.getInt("genre_id"));
+                result.computeIfAbsent(filmId, k -> new HashSet<>()).add(genre);
             }
             return result;
         });
@@ -319,44 +488,10 @@ public class FilmDbStorage implements FilmStorage {
         });
     }
 
-    public Set<Genre> getGenres() {
-        String sql = "SELECT * FROM genres";
-        return new HashSet<>(jdbc.query(sql, mapperGenre));
-    }
-
-    public Optional<Genre> getGenreById(int genreId) {
-        String sql = "SELECT * FROM genres WHERE genre_id = ?";
-        try {
-            Genre genre = jdbc.queryForObject(sql, mapperGenre, genreId);
-            return Optional.of(genre);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Жанр с таким id не существует");
-
-        }
-    }
-
-    public Set<Mpa> getMpas() {
-        String sql = "SELECT * FROM mpas";
-        return new HashSet<>(jdbc.query(sql, mapperMpa));
-    }
-
-    public Optional<Mpa> getMpaById(int mpaId) {
-        String sql = "SELECT * FROM mpas WHERE mpa_id = ?";
-        try {
-            Mpa mpa = jdbc.queryForObject(sql, mapperMpa, mpaId);
-            return Optional.of(mpa);
-        } catch (EmptyResultDataAccessException e) {
-            throw new NotFoundException("Рейтинг с таким id не существует");
-        }
-    }
-
     public List<Film> searchByTitle(String query) {
         String sql = "SELECT * FROM films WHERE LOWER(name) LIKE ?";
         List<Film> films = jdbc.query(sql, mapper, "%" + query.toLowerCase() + "%");
         enrichFilms(films);
-        for (Film film : films) {
-            addNameMpa(film);
-        }
         return films;
     }
 
@@ -369,9 +504,6 @@ public class FilmDbStorage implements FilmStorage {
                 """;
         List<Film> films = jdbc.query(sql, mapper, "%" + query.toLowerCase() + "%");
         enrichFilms(films);
-        for (Film film : films) {
-            addNameMpa(film);
-        }
         return films;
     }
 
@@ -386,9 +518,6 @@ public class FilmDbStorage implements FilmStorage {
         List<Film> films = jdbc.query(sql, mapper, "%" + query.toLowerCase() + "%",
                 "%" + query.toLowerCase() + "%");
         enrichFilms(films);
-        for (Film film : films) {
-            addNameMpa(film);
-        }
         return films;
     }
 
@@ -405,6 +534,7 @@ public class FilmDbStorage implements FilmStorage {
         Integer generatedId = keyHolder.getKeyAs(Integer.class);
         if (generatedId != null) {
             director.setDirectorId(generatedId);
+            eventPublisher.publishEvent(new DirectorEvent(generatedId, director, Operation.ADD));
             return director;
         } else {
             throw new RuntimeException("Не удалось создать режиссера — id не сгенерирован");
@@ -433,6 +563,7 @@ public class FilmDbStorage implements FilmStorage {
         if (rowsUpdated == 0) {
             throw new NotFoundException("Режиссер с id=" + director.getDirectorId() + " не найден");
         }
+        eventPublisher.publishEvent(new DirectorEvent(director.getDirectorId(), director, Operation.UPDATE));
 
         return director;
     }
@@ -444,6 +575,7 @@ public class FilmDbStorage implements FilmStorage {
         if (rowsDeleted == 0) {
             throw new NotFoundException("Режиссер с id=" + directorId + " не найден");
         }
+        eventPublisher.publishEvent(new DirectorEvent(directorId, null, Operation.REMOVE));
     }
 
     public List<Director> getAllDirectors() {
@@ -456,69 +588,40 @@ public class FilmDbStorage implements FilmStorage {
         });
     }
 
-    public List<Film> getFilmsByDirectorSorted(int directorId, String sortBy) {
-        log.info("Request received: directorId = {}, sortBy = {}", directorId, sortBy); //ищу баг
-        String sql;
+    // Режиссёры по набору id одним запросом на каждые IN_CHUNK_SIZE id
+    public Map<Integer, Director> getDirectorsByIds(Collection<Integer> directorIds) {
+        Map<Integer, Director> result = new HashMap<>();
+        List<Integer> ids = new ArrayList<>(directorIds);
+        for (int from = 0; from < ids.size(); from += IN_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK_SIZE, ids.size()));
+            String sql = "SELECT director_id, name FROM directors WHERE director_id IN (" + placeholders(chunk.size()) + ")";
+            jdbc.query(sql, (RowCallbackHandler) rs -> {
+                Director director = new Director(rs.getInt("director_id"), rs.getString("name"));
+                result.put(director.getDirectorId(), director);
+            }, chunk.toArray());
+        }
+        return result;
+    }
 
+    // Один упорядоченный запрос по фильмам режиссёра и пакетная догрузка связей:
+    // число запросов не зависит от размера фильмографии
+    public List<Film> getFilmsByDirectorSorted(int directorId, String sortBy) {
+        String orderBy;
         if ("year".equals(sortBy)) {
-            sql = """
-                    SELECT f.*,
-                           d.director_id AS director_id,
-                           d.name AS director_name
-                    FROM films f
-                    JOIN film_director fd ON f.film_id = fd.film_id
-                    JOIN directors d ON fd.director_id = d.director_id
-                    WHERE fd.director_id = ?
-                    ORDER BY f.releaseDate ASC
-                    """;
+            orderBy = "f.releaseDate, f.film_id";
         } else if ("likes".equals(sortBy)) {
-            sql = """
-                    SELECT f.*,
-                           COUNT(l.user_id) AS like_count,
-                           d.director_id AS director_id,
-                           d.name AS director_name
-                    FROM films f
-                    JOIN film_director fd ON f.film_id = fd.film_id
-                    LEFT JOIN likes l ON f.film_id = l.film_id
-                    JOIN directors d ON fd.director_id = d.director_id
-                    WHERE fd.director_id = ?
-                    GROUP BY f.film_id, d.director_id, d.name
-                    ORDER BY COUNT(l.user_id) DESC
-                    """;
+            orderBy = "f.like_count DESC, f.film_id";
         } else {
             throw new IllegalArgumentException("Invalid sortBy parameter");
         }
 
-        return jdbc.query(sql, (rs, rowNum) -> {
-            Film film = new Film();
-            film.setId(rs.getInt("film_id"));
-            film.setName(rs.getString("name"));
-            film.setDescription(rs.getString("description"));
-            film.setReleaseDate(rs.getDate("releaseDate").toLocalDate());
-            film.setDuration(rs.getInt("duration"));
-
-            log.debug("Mapped film: id = {}, name = {}, releaseDate = {}", //ищу баг
-                    film.getId(), film.getName(), film.getReleaseDate());
-            // Заполняем MPA
-            int mpaId = rs.getInt("mpa_id");
-            Mpa mpa = getMpaById(mpaId).orElseThrow(() ->
-                    new NotFoundException("MPA with id=" + mpaId + " not found"));
-            film.setMpa(mpa);
-
-            // Заполняем жанры
-            film.setGenres(getGenresOfFilm(film.getId()));
-
-            // Заполняем лайки
-            film.setLikes(getLikes(film.getId()));
-
-            // Заполняем режиссеров
-            Director director = new Director();
-            director.setDirectorId(rs.getInt("director_id"));
-            director.setName(rs.getString("director_name"));
-            film.setDirectors(Set.of(director));
-
-            return film;
-        }, directorId);
+        String sql = "SELECT f.* FROM films f " +
+                "JOIN film_director fd ON f.film_id = fd.film_id " +
+                "WHERE fd.director_id = ? " +
+                "ORDER BY " + orderBy;
+        List<Film> films = jdbc.query(sql, mapper, directorId);
+        enrichFilms(films);
+        return films;
     }
 
     //метод для получения режиссеров из таблицы
@@ -545,35 +648,29 @@ public class FilmDbStorage implements FilmStorage {
         }
     }
 
-    //метод для сохранения связи между фильмом и режиссёрами
-    private void addDirectors(int filmId, Set<Director> directors) {
-        String sql = "INSERT INTO film_director (film_id, director_id) VALUES (?, ?)";
-        for (Director director : directors) {
-            jdbc.update(sql, filmId, director.getDirectorId());
+    // Загружает фильмы по id и возвращает их в порядке переданного списка; отсутствующие id пропускаются
+    public List<Film> getFilmsInOrder(List<Integer> filmIds) {
+        if (filmIds.isEmpty()) {
+            return List.of();
         }
-    }
-
-    //метод для удаления старых связей перед обновлением
-    private void deleteDirectors(int filmId) {
-        String sql = "DELETE FROM film_director WHERE film_id = ?";
-        jdbc.update(sql, filmId);
-    }
-
-    public List<Film> getFilmsByIds(Set<Integer> mostSimilarUserLikes) {
-        String ids = String.join(",", Collections.nCopies(mostSimilarUserLikes.size(), "?"));
-
-        try {
-            String sql = "SELECT * FROM films WHERE film_id IN (" + ids + ")";
-            List<Film> films = jdbc.query(sql, mapper, mostSimilarUserLikes.toArray());
-            enrichFilms(films);
-            for (Film film : films) {
-                addNameMpa(film);
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (int from = 0; from < filmIds.size(); from += IN_CHUNK_SIZE) {
+            List<Integer> chunk = filmIds.subList(from, Math.min(from + IN_CHUNK_SIZE, filmIds.size()));
+            String sql = "SELECT * FROM films WHERE film_id IN (" + placeholders(chunk.size()) + ")";
+            for (Film film : jdbc.query(sql, mapper, chunk.toArray())) {
+                filmsById.put(film.getId(), film);
             }
-            return films;
-        } catch (DataAccessException e) {
-            throw new RuntimeException("Не удалось получить рекомендации для пользователя", e);
         }
 
+        List<Film> films = new ArrayList<>(filmsById.size());
+        for (Integer filmId : filmIds) {
+            Film film = filmsById.get(filmId);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        enrichFilms(films);
+        return films;
     }
 
     private String getPopularFilmsQuery(int genreId, int year) {
@@ -596,39 +693,27 @@ public class FilmDbStorage implements FilmStorage {
                         AND genre_id = ?
                     """;
         }
+        // like_count поддерживается addLike/removeLike, поэтому LIMIT отдаётся
+        // просмотром индекса films_like_count_idx без агрегации по likes
         return """
-                    SELECT f.*, COUNT(DISTINCT l.user_id) AS like_count
+                    SELECT f.*
                     FROM films f
-                    LEFT JOIN likes l ON f.film_id = l.film_id
                 """ + variablePart + """
-                    GROUP BY f.film_id
-                    ORDER BY like_count DESC
+                    ORDER BY f.like_count DESC, f.film_id
                     LIMIT ?
                 """;
     }
 
+    // Общие лайки двух пользователей одним запросом, по убыванию общего числа лайков фильма
     public List<Film> getCommonFilmsSortedByPopularity(int userId, int friendId) {
         String sql = """
-        SELECT f.film_id AS film_id,
-               COUNT(l.user_id) AS like_count
-        FROM likes l
-        JOIN films f ON l.film_id = f.film_id
-        WHERE l.user_id IN (?, ?)
-          AND EXISTS (
-              SELECT 1 FROM likes l1
-              WHERE l1.user_id = ? AND l1.film_id = l.film_id
-          )
-          AND EXISTS (
-              SELECT 1 FROM likes l2
-              WHERE l2.user_id = ? AND l2.film_id = l.film_id
-          )
-        GROUP BY f.film_id
-        ORDER BY like_count DESC;
-    """;
-
-        return jdbc.query(sql, (rs, rowNum) -> {
-            int filmId = rs.getInt("film_id");
-            return findFilmById(filmId).orElseThrow();
-        }, userId, friendId, userId, friendId);
+                SELECT f.* FROM films f
+                JOIN likes l1 ON l1.film_id = f.film_id AND l1.user_id = ?
+                JOIN likes l2 ON l2.film_id = f.film_id AND l2.user_id = ?
+                ORDER BY f.like_count DESC, f.film_id
+                """;
+        List<Film> films = jdbc.query(sql, mapper, userId, friendId);
+        enrichFilms(films);
+        return films;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,60 @@
+package ru.yandex.practicum.filmorate.storage.dal;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.model.FilmSimilarity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class FilmSimilarityDbStorage {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate jdbc;
+
+    public List<Integer> getSimilarFilmIds(int filmId, int count) {
+        String sql = "SELECT similar_film_id FROM film_similarity WHERE film_id = ? " +
+                "ORDER BY score DESC, similar_film_id LIMIT ?";
+        return jdbc.queryForList(sql, Integer.class, filmId, count);
+    }
+
+    // Полная замена матрицы одним снимком
+    @Transactional
+    public void replaceAll(List<FilmSimilarity> rows) {
+        jdbc.update("DELETE FROM film_similarity");
+        insert(rows);
+    }
+
+    // Замена соседей только у пересчитанных фильмов
+    @Transactional
+    public void replace(Collection<Integer> filmIds, List<FilmSimilarity> rows) {
+        List<Integer> ids = List.copyOf(filmIds);
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            String sql = "DELETE FROM film_similarity WHERE film_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbc.update(sql, chunk.toArray());
+        }
+        insert(rows);
+    }
+
+    // Удалённые фильмы пропускаются: их строки уже убраны каскадом
+    private void insert(List<FilmSimilarity> rows) {
+        String sql = "INSERT INTO film_similarity (film_id, similar_film_id, score) " +
+                "SELECT ?, ?, ? FROM films WHERE film_id = ? " +
+                "AND EXISTS (SELECT 1 FROM films WHERE film_id = ?)";
+        jdbc.batchUpdate(sql, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setInt(1, row.getFilmId());
+            ps.setInt(2, row.getSimilarFilmId());
+            ps.setDouble(3, row.getScore());
+            ps.setInt(4, row.getFilmId());
+            ps.setInt(5, row.getSimilarFilmId());
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.storage.dal;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Обслуживание денормализованного счётчика films.like_count
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LikeCountMaintenance {
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${filmorate.like-count.backfill-on-startup:false}")
+    private boolean backfillOnStartup;
+
+    // Разовое заполнение счётчика для баз, созданных до появления колонки
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup() {
+        if (backfillOnStartup) {
+            backfill();
+        }
+    }
+
+    public int backfill() {
+        String sql = """
+                UPDATE films f
+                SET like_count = (SELECT COUNT(*) FROM likes l WHERE l.film_id = f.film_id)
+                """;
+        long start = System.currentTimeMillis();
+        int updated = jdbc.update(sql);
+        log.info("Пересчитан like_count для {} фильмов за {} мс", updated, System.currentTimeMillis() - start);
+        return updated;
+    }
+
+    // Возвращает id фильмов, у которых like_count расходится с таблицей likes
+    @Scheduled(fixedDelayString = "${filmorate.like-count.check-interval-ms:3600000}",
+            initialDelayString = "${filmorate.like-count.check-interval-ms:3600000}")
+    public List<Integer> checkConsistency() {
+        String sql = """
+                SELECT f.film_id
+                FROM films f
+                LEFT JOIN (SELECT film_id, COUNT(*) AS cnt FROM likes GROUP BY film_id) l
+                    ON f.film_id = l.film_id
+                WHERE f.like_count <> COALESCE(l.cnt, 0)
+                """;
+        List<Integer> mismatched = jdbc.queryForList(sql, Integer.class);
+        if (mismatched.isEmpty()) {
+            log.debug("like_count согласован с таблицей likes");
+        } else {
+            log.warn("like_count расходится с таблицей likes у фильмов: {}", mismatched);
+        }
+        return mismatched;
+    }
+}
@@ -1,16 +1,19 @@
 package ru.yandex.practicum.filmorate.storage.dal;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.enumModels.EventType;
 import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.model.event.FeedEvent;
 import ru.yandex.practicum.filmorate.storage.ReviewStorage;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,6 +22,7 @@ import java.util.Optional;
 public class ReviewDbStorage implements ReviewStorage {
 
     private final JdbcTemplate jdbc;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public Review addReview(Review review) {
@@ -28,7 +32,7 @@ public class ReviewDbStorage implements ReviewStorage {
         String idSql = "SELECT MAX(review_id) FROM reviews";
         int reviewId = jdbc.queryForObject(idSql, Integer.class);
 
-        UserDbStorage.addFeed(jdbc, review.getUserId(), reviewId, EventType.REVIEW, Operation.ADD);
+        eventPublisher.publishEvent(FeedEvent.of(review.getUserId(), reviewId, EventType.REVIEW, Operation.ADD));
         return findReviewById(reviewId).orElseThrow();
     }
 
@@ -39,7 +43,7 @@ public class ReviewDbStorage implements ReviewStorage {
         jdbc.update(sql, review.getContent(), review.getPositive(), review.getReviewId());
 
         Review reviewDB = findReviewById(review.getReviewId()).orElseThrow();
-        UserDbStorage.addFeed(jdbc, reviewDB.getUserId(), reviewDB.getReviewId(), EventType.REVIEW, Operation.UPDATE);
+        eventPublisher.publishEvent(FeedEvent.of(reviewDB.getUserId(), reviewDB.getReviewId(), EventType.REVIEW, Operation.UPDATE));
         return reviewDB;
     }
 
@@ -47,7 +51,7 @@ public class ReviewDbStorage implements ReviewStorage {
     public void deleteReview(int reviewId) {
         Optional<Review> review = findReviewById(reviewId);
         if (review.isPresent()) {
-            UserDbStorage.addFeed(jdbc, review.get().getUserId(), reviewId, EventType.REVIEW, Operation.REMOVE);
+            eventPublisher.publishEvent(FeedEvent.of(review.get().getUserId(), reviewId, EventType.REVIEW, Operation.REMOVE));
         }
 
         String sql = "DELETE FROM reviews WHERE review_id = ?";
@@ -62,16 +66,36 @@ public class ReviewDbStorage implements ReviewStorage {
 
     @Override
     public List<Review> findReviewsByFilmId(int filmId, int count) {
-        String sql = "SELECT * FROM reviews WHERE film_id = ? ORDER BY useful DESC LIMIT ?";
+        String sql = "SELECT * FROM reviews WHERE film_id = ? ORDER BY useful DESC, review_id LIMIT ?";
         return jdbc.query(sql, this::mapRowToReview, filmId, count);
     }
 
     @Override
     public List<Review> findAllReviews(int count) {
-        String sql = "SELECT * FROM reviews ORDER BY useful DESC LIMIT ?";
+        String sql = "SELECT * FROM reviews ORDER BY useful DESC, review_id LIMIT ?";
         return jdbc.query(sql, this::mapRowToReview, count);
     }
 
+    @Override
+    public List<Review> findReviewsPage(Integer filmId, Integer afterUseful, int afterReviewId, int limit) {
+        List<Object> params = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (filmId != null) {
+            conditions.add("film_id = ?");
+            params.add(filmId);
+        }
+        if (afterUseful != null) {
+            conditions.add("(useful < ? OR (useful = ? AND review_id > ?))");
+            params.add(afterUseful);
+            params.add(afterUseful);
+            params.add(afterReviewId);
+        }
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        String sql = "SELECT * FROM reviews" + where + " ORDER BY useful DESC, review_id LIMIT ?";
+        params.add(limit);
+        return jdbc.query(sql, this::mapRowToReview, params.toArray());
+    }
+
     @Override
     public void addLike(int reviewId, int userId) {
         checkUlness(reviewId, userId);
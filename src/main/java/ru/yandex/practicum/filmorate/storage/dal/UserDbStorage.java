@@ -2,12 +2,15 @@ package ru.yandex.practicum.filmorate.storage.dal;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.model.Feed;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
@@ -16,14 +19,19 @@ import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.model.enumModels.EventType;
 import ru.yandex.practicum.filmorate.model.enumModels.Operation;
 import ru.yandex.practicum.filmorate.model.enumModels.StatusFriendship;
+import ru.yandex.practicum.filmorate.model.event.FeedEvent;
+import ru.yandex.practicum.filmorate.model.event.FriendEvent;
+import ru.yandex.practicum.filmorate.model.event.LikeEvent;
+import ru.yandex.practicum.filmorate.model.event.UserEvent;
 import ru.yandex.practicum.filmorate.storage.UserStorage;
+import ru.yandex.practicum.filmorate.storage.cache.EntityIdIndex;
 import ru.yandex.practicum.filmorate.storage.dal.mappers.FeedRowMapper;
 import ru.yandex.practicum.filmorate.storage.dal.mappers.FriendshipRowMapper;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 
 @RequiredArgsConstructor
@@ -31,10 +39,16 @@ import java.util.*;
 @Slf4j
 public class UserDbStorage implements UserStorage {
 
+    // Максимальное число id в одном IN-списке при догрузке друзей
+    private static final int IN_CHUNK_SIZE = 500;
+
     private final JdbcTemplate jdbc;
     private final RowMapper<User> mapper;
     private final RowMapper<Film> filmMapper;
     private final FeedRowMapper mapperFeed;
+    private final ApplicationEventPublisher eventPublisher;
+    private final EntityIdIndex idIndex;
+    private final FeedWriter feedWriter;
 
     @Override
     public User addUser(User user) {
@@ -56,6 +70,7 @@ public class UserDbStorage implements UserStorage {
             throw new RuntimeException("Не удалось сохранить пользователя — id не сгенерирован");
         }
         user.setId(generatedId);
+        eventPublisher.publishEvent(new UserEvent(generatedId, Operation.ADD));
 
         return user;
     }
@@ -70,12 +85,64 @@ public class UserDbStorage implements UserStorage {
     }
 
     @Override
-    public Collection<User> getUsers() {
+    public Collection<User> getUsers(boolean withFriends) {
         String sql = "SELECT * FROM users";
         List<User> results = jdbc.query(sql, mapper);
-        for (User u : results) {
-            u.setFriends(getFriendsByUserId(u.getId()));
+        attachFriends(results, withFriends);
+        return results;
+    }
+
+    // Друзья всей выборки — одним сгруппированным запросом на каждые IN_CHUNK_SIZE пользователей
+    private void attachFriends(List<User> users, boolean withFriends) {
+        if (!withFriends) {
+            users.forEach(user -> user.setFriends(null));
+            return;
+        }
+        if (users.isEmpty()) {
+            return;
+        }
+        Map<Integer, Set<Friendship>> friends = getFriendsGroupedByUserIds(
+                users.stream().map(User::getId).toList());
+        for (User user : users) {
+            user.setFriends(friends.getOrDefault(user.getId(), new HashSet<>()));
+        }
+    }
+
+    // Потоковая выгрузка пользователей keyset-страницами: страница с друзьями читается целиком
+    // до передачи потребителю, поэтому соединение не удерживается, пока ответ пишется клиенту
+    public void forEachUser(Consumer<User> consumer) {
+        int afterId = 0;
+        List<User> page;
+        do {
+            page = getUsersPage(afterId, IN_CHUNK_SIZE, true);
+            page.forEach(consumer);
+            if (!page.isEmpty()) {
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == IN_CHUNK_SIZE);
+    }
+
+    // Друзья сразу для набора пользователей, IN-списками не длиннее IN_CHUNK_SIZE
+    public Map<Integer, Set<Friendship>> getFriendsGroupedByUserIds(List<Integer> userIds) {
+        Map<Integer, Set<Friendship>> result = new HashMap<>();
+        FriendshipRowMapper friendshipMapper = new FriendshipRowMapper();
+        for (int from = 0; from < userIds.size(); from += IN_CHUNK_SIZE) {
+            List<Integer> chunk = userIds.subList(from, Math.min(from + IN_CHUNK_SIZE, userIds.size()));
+            String sql = "SELECT * FROM friends WHERE requester_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            jdbc.query(sql, (RowCallbackHandler) rs -> {
+                Friendship friendship = friendshipMapper.mapRow(rs, rs.getRow());
+                result.computeIfAbsent(friendship.getRequesterId(), k -> new HashSet<>()).add(friendship);
+            }, chunk.toArray());
         }
+        return result;
+    }
+
+    @Override
+    public List<User> getUsersPage(int afterId, int limit, boolean withFriends) {
+        String sql = "SELECT * FROM users WHERE user_id > ? ORDER BY user_id LIMIT ?";
+        List<User> results = jdbc.query(sql, mapper, afterId, limit);
+        attachFriends(results, withFriends);
         return results;
     }
 
@@ -91,11 +158,35 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
+    @Override
+    public boolean existsUser(int id) {
+        if (idIndex.containsUser(id)) {
+            return true;
+        }
+        long generation = idIndex.userGeneration();
+        Boolean exists = jdbc.queryForObject("SELECT EXISTS(SELECT 1 FROM users WHERE user_id = ?)",
+                Boolean.class, id);
+        if (Boolean.TRUE.equals(exists)) {
+            idIndex.addUser(id, generation);
+            return true;
+        }
+        return false;
+    }
+
+    @Transactional
     public void deleteById(int userId) {
         // Удаление записей из таблицы friends
+        List<Friendship> friendships = jdbc.query("SELECT * FROM friends WHERE requester_id = ? OR addressee_id = ?",
+                new FriendshipRowMapper(), userId, userId);
         String deleteFriendsSql = "DELETE FROM friends WHERE requester_id = ? OR addressee_id = ?";
         jdbc.update(deleteFriendsSql, userId, userId);
 
+        // Уменьшаем счётчики лайков у фильмов, которые лайкал пользователь
+        Set<Integer> likedFilms = getLikesByUserId(userId);
+        String decrementLikeCountSql = "UPDATE films SET like_count = like_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM likes WHERE user_id = ?)";
+        jdbc.update(decrementLikeCountSql, userId);
+
         // Удаление записей из таблицы likes
         String deleteLikesSql = "DELETE FROM likes WHERE user_id = ?";
         jdbc.update(deleteLikesSql, userId);
@@ -108,6 +199,14 @@ public class UserDbStorage implements UserStorage {
         if (rowsAffected == 0) {
             throw new NotFoundException("Пользователь с id " + userId + " не найден.");
         }
+        for (Integer filmId : likedFilms) {
+            eventPublisher.publishEvent(new LikeEvent(filmId, userId, Operation.REMOVE));
+        }
+        eventPublisher.publishEvent(new UserEvent(userId, Operation.REMOVE));
+        for (Friendship friendship : friendships) {
+            eventPublisher.publishEvent(new FriendEvent(friendship.getRequesterId(), friendship.getAddresseeId(),
+                    Operation.REMOVE));
+        }
     }
 
     public Set<Friendship> getFriendsByUserId(int userId) {
@@ -115,55 +214,70 @@ public class UserDbStorage implements UserStorage {
         return new HashSet<>(jdbc.query(sql, new FriendshipRowMapper(), userId));
     }
 
+    // Заявка в друзья за одну транзакцию: лёгкая проверка существования с блокировкой обоих пользователей,
+    // условное подтверждение встречной заявки и один MERGE прямой строки.
+    // Блокировка FOR UPDATE сериализует встречные заявки одной пары — подтверждение не теряется
+    @Transactional
     public Friendship addFriend(int requesterId, int addresseeId) {
-        String checkReverseSql = "SELECT status_id FROM friends WHERE requester_id = ? AND addressee_id = ?";
-        List<Integer> reverseStatuses = jdbc.queryForList(checkReverseSql, Integer.class, addresseeId, requesterId);
-
-        boolean reverseExists = !reverseStatuses.isEmpty();
-        boolean reverseIsUnconfirmed = reverseExists && reverseStatuses.get(0) == StatusFriendship.UNCONFIRMED.getId();
-
-        String checkDirectSql = "SELECT COUNT(*) FROM friends WHERE requester_id = ? AND addressee_id = ?";
-        Integer directCount = jdbc.queryForObject(checkDirectSql, Integer.class, requesterId, addresseeId);
-
-        boolean directExists = directCount != null && directCount > 0;
-
-        if (reverseIsUnconfirmed) {
-            if (!directExists) {
-                String insertConfirmed = "INSERT INTO friends (requester_id, addressee_id, status_id) VALUES (?, ?, ?)";
-                jdbc.update(insertConfirmed, requesterId, addresseeId, StatusFriendship.CONFIRMED.getId());
-            } else {
-                String updateDirect = "UPDATE friends SET status_id = ? WHERE requester_id = ? AND addressee_id = ?";
-                jdbc.update(updateDirect, StatusFriendship.CONFIRMED.getId(), requesterId, addresseeId);
+        String probeSql = "SELECT user_id FROM users WHERE user_id IN (?, ?) FOR UPDATE";
+        List<Integer> existing = jdbc.queryForList(probeSql, Integer.class, requesterId, addresseeId);
+        for (int userId : new int[]{requesterId, addresseeId}) {
+            if (!existing.contains(userId)) {
+                throw new NotFoundException("Пользователь с id=" + userId + " не найден");
             }
-
-            String updateReverse = "UPDATE friends SET status_id = ? WHERE requester_id = ? AND addressee_id = ?";
-            jdbc.update(updateReverse, StatusFriendship.CONFIRMED.getId(), addresseeId, requesterId);
-
-            addFeed(jdbc, requesterId, addresseeId, EventType.FRIEND, Operation.ADD);
-            return new Friendship(requesterId, addresseeId, StatusFriendship.CONFIRMED);
         }
 
-        if (!directExists) {
-            String insertUnconfirmed = "INSERT INTO friends (requester_id, addressee_id, status_id) VALUES (?, ?, ?)";
-            jdbc.update(insertUnconfirmed, requesterId, addresseeId, StatusFriendship.UNCONFIRMED.getId());
-            addFeed(jdbc, requesterId, addresseeId, EventType.FRIEND, Operation.ADD);
-            return new Friendship(requesterId, addresseeId, StatusFriendship.UNCONFIRMED);
+        String confirmReverseSql = "UPDATE friends SET status_id = ? WHERE requester_id = ? AND addressee_id = ?";
+        boolean reverseExists = jdbc.update(confirmReverseSql,
+                StatusFriendship.CONFIRMED.getId(), addresseeId, requesterId) > 0;
+        StatusFriendship status = reverseExists ? StatusFriendship.CONFIRMED : StatusFriendship.UNCONFIRMED;
+
+        // Строка вставляется или меняет статус; если она уже в нужном статусе, MERGE ничего не затрагивает
+        String mergeDirectSql = """
+                    MERGE INTO friends f
+                    USING (VALUES (CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS INTEGER)))
+                        AS s(requester_id, addressee_id, status_id)
+                    ON f.requester_id = s.requester_id AND f.addressee_id = s.addressee_id
+                    WHEN MATCHED AND f.status_id <> s.status_id THEN
+                        UPDATE SET status_id = s.status_id
+                    WHEN NOT MATCHED THEN
+                        INSERT (requester_id, addressee_id, status_id)
+                        VALUES (s.requester_id, s.addressee_id, s.status_id)
+                """;
+        if (jdbc.update(mergeDirectSql, requesterId, addresseeId, status.getId()) > 0) {
+            addFeed(requesterId, addresseeId, EventType.FRIEND, Operation.ADD);
+            eventPublisher.publishEvent(new FriendEvent(requesterId, addresseeId, Operation.ADD));
         }
-
-        return null;
+        return new Friendship(requesterId, addresseeId, status);
     }
 
+    // Удаление из друзей за одну транзакцию: событие в ленту пишется, только если строка действительно удалена,
+    // а встречная подтверждённая заявка снова становится неподтверждённой одним условным UPDATE
+    @Transactional
     public void removeFriend(int requesterId, int addresseeId) {
         String sql = "DELETE FROM friends WHERE requester_id = ? AND addressee_id = ?";
-        jdbc.update(sql, requesterId, addresseeId);
-        addFeed(jdbc, requesterId, addresseeId, EventType.FRIEND, Operation.REMOVE);
-
-        String sqlCheck = "SELECT status_id FROM friends WHERE requester_id = ? AND addressee_id = ?";
-        List<Integer> statuses = jdbc.queryForList(sqlCheck, Integer.class, addresseeId, requesterId);
-        if (!statuses.isEmpty() && StatusFriendship.fromId(statuses.get(0)) == StatusFriendship.CONFIRMED) {
-            String sqlUpdate = "UPDATE friendships SET status_id = ? WHERE requester_id = ? AND addressee_id = ?";
-            jdbc.update(sqlUpdate, StatusFriendship.UNCONFIRMED.getId(), addresseeId, requesterId);
+        if (jdbc.update(sql, requesterId, addresseeId) > 0) {
+            addFeed(requesterId, addresseeId, EventType.FRIEND, Operation.REMOVE);
+            eventPublisher.publishEvent(new FriendEvent(requesterId, addresseeId, Operation.REMOVE));
         }
+
+        String sqlUpdate = "UPDATE friends SET status_id = ? " +
+                "WHERE requester_id = ? AND addressee_id = ? AND status_id = ?";
+        jdbc.update(sqlUpdate, StatusFriendship.UNCONFIRMED.getId(), addresseeId, requesterId,
+                StatusFriendship.CONFIRMED.getId());
+    }
+
+    // Друзья пользователя по возрастанию id одним запросом и их списки друзей — одним сгруппированным
+    public List<User> getFriendUsers(int userId) {
+        String sql = """
+                    SELECT u.* FROM users u
+                    JOIN friends f ON u.user_id = f.addressee_id
+                    WHERE f.requester_id = ?
+                    ORDER BY u.user_id
+                """;
+        List<User> friends = jdbc.query(sql, mapper, userId);
+        attachFriends(friends, true);
+        return friends;
     }
 
     public List<User> findMutualFriends(int userId, int otherUserId) {
@@ -172,8 +286,44 @@ public class UserDbStorage implements UserStorage {
                     JOIN friends f1 ON u.user_id = f1.addressee_id
                     JOIN friends f2 ON u.user_id = f2.addressee_id
                     WHERE f1.requester_id = ? AND f2.requester_id = ?
+                    ORDER BY u.user_id
+                """;
+        List<User> friends = jdbc.query(sql, mapper, userId, otherUserId);
+        attachFriends(friends, true);
+        return friends;
+    }
+
+    // Запасной путь для подсказок, пока граф дружбы не построен
+    public List<Integer> getFriendSuggestionIds(int userId, int count) {
+        String sql = """
+                    SELECT f2.addressee_id FROM friends f1
+                    JOIN friends f2 ON f2.requester_id = f1.addressee_id
+                    WHERE f1.requester_id = ? AND f2.addressee_id <> ?
+                      AND f2.addressee_id NOT IN (SELECT addressee_id FROM friends WHERE requester_id = ?)
+                    GROUP BY f2.addressee_id
+                    ORDER BY COUNT(*) DESC, f2.addressee_id
+                    LIMIT ?
                 """;
-        return jdbc.query(sql, mapper, userId, otherUserId);
+        return jdbc.queryForList(sql, Integer.class, userId, userId, userId, count);
+    }
+
+    // Пользователи в порядке переданных id, со списками друзей; отсутствующие id пропускаются
+    public List<User> getUsersByIds(List<Integer> userIds) {
+        Map<Integer, User> byId = new HashMap<>();
+        for (int from = 0; from < userIds.size(); from += IN_CHUNK_SIZE) {
+            List<Integer> chunk = userIds.subList(from, Math.min(from + IN_CHUNK_SIZE, userIds.size()));
+            String sql = "SELECT * FROM users WHERE user_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+            for (User user : jdbc.query(sql, mapper, chunk.toArray())) {
+                byId.put(user.getId(), user);
+            }
+        }
+        List<User> users = userIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+        attachFriends(users, true);
+        return users;
     }
 
     public Set<Integer> getLikesByUserId(int userId) {
@@ -181,39 +331,54 @@ public class UserDbStorage implements UserStorage {
         return new HashSet<>(jdbc.queryForList(sql, Integer.class, userId));
     }
 
-    public Map<Integer, Set<Integer>> getAllLikes() {
-        String sql = "SELECT * FROM likes";
-        return jdbc.query(sql, rs -> {
-            Map<Integer, Set<Integer>> usersLikes = new HashMap<>();
-            while (rs.next()) {
-                int userId = rs.getInt("user_id");
-                int filmId = rs.getInt("film_id");
-                usersLikes.computeIfAbsent(userId, k -> new HashSet<>()).add(filmId);
-            }
-            return usersLikes;
-        });
+    // Запасной путь рекомендаций, пока индекс лайков не построен, — тот же подсчёт, что у RecommendationService:
+    // neighbours пользователей с наибольшим числом общих лайков (при равенстве — с меньшим id) голосуют
+    // за свои непросмотренные userId фильмы весом, равным числу общих лайков; limit лучших по весу, затем по id
+    public List<Integer> getRecommendedFilmIds(int userId, int neighbours, int limit) {
+        String sql = """
+                SELECT l.film_id
+                FROM (
+                    SELECT l2.user_id, COUNT(*) AS weight
+                    FROM likes l1
+                    JOIN likes l2 ON l1.film_id = l2.film_id AND l2.user_id <> l1.user_id
+                    WHERE l1.user_id = ?
+                    GROUP BY l2.user_id
+                    ORDER BY weight DESC, l2.user_id
+                    LIMIT ?
+                ) n
+                JOIN likes l ON l.user_id = n.user_id
+                WHERE l.film_id NOT IN (SELECT film_id FROM likes WHERE user_id = ?)
+                GROUP BY l.film_id
+                ORDER BY SUM(n.weight) DESC, l.film_id
+                LIMIT ?
+                """;
+        return jdbc.queryForList(sql, Integer.class, userId, neighbours, userId, limit);
     }
 
-    public static void addFeed(JdbcTemplate jdbc, int userId, int entityId, EventType eventType, Operation operation) {
-        String createFeed = "INSERT INTO feed(user_id, entity_id, event_type_id, operation_id, event_time) " +
-                "VALUES(?, ?, ?, ?, ?)";
-
-        if (jdbc.update(createFeed, userId, entityId, eventType.getId(), operation.getId(), LocalDateTime.now()) == 0) {
-            log.warn("Неправильный вызов метода добавления события");
-            throw new IllegalArgumentException("Неправильный вызов метода добавления события");
-        }
-        log.debug("Добавлена запись в ленту событий: userId={}, entityId={}, eventType={}, operation={}",
-                userId, entityId, eventType, operation);
+    private void addFeed(int userId, int entityId, EventType eventType, Operation operation) {
+        eventPublisher.publishEvent(FeedEvent.of(userId, entityId, eventType, operation));
     }
 
+    // Тип события и операция восстанавливаются из id в памяти, без соединения со справочниками
     public Collection<Feed> getFeed(int userId) {
-        String getUserFeed = """
-                    SELECT * FROM feed f
-                    JOIN event_type ev ON f.event_type_id = ev.type_id
-                    JOIN operation o ON f.operation_id = o.operation_id
-                    WHERE user_id = ?
-                """;
+        feedWriter.flush();
+        String getUserFeed = "SELECT * FROM feed WHERE user_id = ? ORDER BY event_id";
 
         return jdbc.query(getUserFeed, mapperFeed, userId);
     }
+
+    // Последние limit событий с event_id меньше beforeEventId (null — с конца ленты), по возрастанию event_id
+    public List<Feed> getFeedPage(int userId, Integer beforeEventId, int limit) {
+        feedWriter.flush();
+        List<Feed> page;
+        if (beforeEventId == null) {
+            String sql = "SELECT * FROM feed WHERE user_id = ? ORDER BY event_id DESC LIMIT ?";
+            page = jdbc.query(sql, mapperFeed, userId, limit);
+        } else {
+            String sql = "SELECT * FROM feed WHERE user_id = ? AND event_id < ? ORDER BY event_id DESC LIMIT ?";
+            page = jdbc.query(sql, mapperFeed, userId, beforeEventId, limit);
+        }
+        Collections.reverse(page);
+        return page;
+    }
 }
@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.storage.dal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class FeedWriterStatsDto {
+    private int queueDepth;
+    private int queueCapacity;
+    private long enqueued;
+    private long written;
+    private long failed;
+    private long flushes;
+    private long backpressureWaits;
+    private long rejected;
+    private double lastFlushMs;
+    private double maxFlushMs;
+    private double avgFlushMs;
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.storage.dal.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// Результат импорта одной строки NDJSON: id созданного фильма или текст ошибки
+@Data
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FilmImportResultDto {
+    private int line;
+    private Integer id;
+    private String error;
+
+    public static FilmImportResultDto created(int line, int id) {
+        return new FilmImportResultDto(line, id, null);
+    }
+
+    public static FilmImportResultDto failed(int line, String error) {
+        return new FilmImportResultDto(line, null, error);
+    }
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.storage.dal.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RecommendationCacheStatsDto {
+    private int size;
+    private int maxSize;
+    private long ttlMs;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+    private double hitRate;
+}
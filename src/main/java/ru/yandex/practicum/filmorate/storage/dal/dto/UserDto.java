@@ -1,5 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.dal.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.*;
 import lombok.Data;
 import ru.yandex.practicum.filmorate.model.User;
@@ -21,6 +22,7 @@ public class UserDto {
     @NotNull(message = "Дата рождения не должна быть пустой")
     @PastOrPresent(message = "Дата рождения не может быть в будущем")
     private LocalDate birthday;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<Integer> friends;
 
     public static UserDto fromModel(ru.yandex.practicum.filmorate.model.User user) {
@@ -30,7 +32,7 @@ public class UserDto {
         dto.setLogin(user.getLogin());
         dto.setName(user.getName());
         dto.setBirthday(user.getBirthday());
-        dto.setFriends(user.getFriends() == null ? List.of() :
+        dto.setFriends(user.getFriends() == null ? null :
                 user.getFriends().stream()
                         .map(f -> f.getRequesterId() == user.getId()
                                 ? f.getAddresseeId()
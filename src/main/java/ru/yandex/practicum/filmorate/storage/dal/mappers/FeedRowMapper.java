@@ -16,10 +16,10 @@ public class FeedRowMapper implements RowMapper<Feed> {
     public Feed mapRow(ResultSet resultSet, int rowNum) throws SQLException {
         Feed feed = new Feed();
         feed.setEntityId(resultSet.getInt("entity_id"));
-        feed.setOperation(Operation.valueOf(resultSet.getString("operation")));
+        feed.setOperation(Operation.fromId(resultSet.getInt("operation_id")));
         feed.setEventId(resultSet.getInt("event_id"));
         feed.setUserId(resultSet.getInt("user_id"));
-        feed.setEventType(EventType.valueOf(resultSet.getString("type")));
+        feed.setEventType(EventType.fromId(resultSet.getInt("event_type_id")));
         feed.setTimestamp(resultSet.getTimestamp("event_time").toLocalDateTime());
 
         return feed;
@@ -1,16 +1,21 @@
 package ru.yandex.practicum.filmorate.storage.dal.mappers;
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
 @Component
+@RequiredArgsConstructor
 public class FilmRowMapper implements RowMapper<Film> {
 
+    private final ReferenceDataCache referenceData;
+
     @Override
     public Film mapRow(ResultSet resultSet, int rowNum) throws SQLException {
         return mapFilm(resultSet);
@@ -24,9 +29,11 @@ public class FilmRowMapper implements RowMapper<Film> {
         film.setDescription(resultSet.getString("description"));
         film.setReleaseDate(resultSet.getDate("releaseDate").toLocalDate());
         film.setDuration(resultSet.getInt("duration"));
+        film.setLikeCount(resultSet.getInt("like_count"));
 
+        // Название рейтинга берём из справочника в памяти, а не отдельным запросом
         int mpaId = resultSet.getInt("mpa_id");
-        Mpa mpa = new Mpa(mpaId, null);
+        Mpa mpa = referenceData.findMpa(mpaId).orElse(new Mpa(mpaId, null));
         film.setMpa(mpa);
 
         return film;
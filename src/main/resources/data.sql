@@ -4,6 +4,7 @@ DELETE FROM reviews;
 DELETE FROM likes;
 DELETE FROM friends;
 DELETE FROM film_genre;
+DELETE FROM film_similarity;
 DELETE FROM films;
 DELETE FROM users;
 DELETE FROM genres;
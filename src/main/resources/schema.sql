@@ -4,9 +4,15 @@ CREATE TABLE IF NOT EXISTS films (
   description varchar(200),
   releaseDate date,
   duration integer,
-  mpa_id integer
+  mpa_id integer,
+  like_count integer DEFAULT 0 NOT NULL
 );
 
+-- Денормализованный счётчик лайков для /films/popular (для уже созданных баз)
+ALTER TABLE films ADD COLUMN IF NOT EXISTS like_count integer DEFAULT 0 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS films_like_count_idx ON films (like_count DESC, film_id);
+
 CREATE TABLE IF NOT EXISTS film_genre (
   film_id integer,
   genre_id integer,
@@ -64,6 +70,18 @@ CREATE TABLE IF NOT EXISTS film_director (
   FOREIGN KEY (director_id) REFERENCES directors(director_id) ON DELETE CASCADE
 );
 
+-- Похожие фильмы: top-N соседей каждого фильма по косинусной мере совместных лайков
+CREATE TABLE IF NOT EXISTS film_similarity (
+  film_id INTEGER NOT NULL,
+  similar_film_id INTEGER NOT NULL,
+  score DOUBLE PRECISION NOT NULL,
+  PRIMARY KEY (film_id, similar_film_id),
+  FOREIGN KEY (film_id) REFERENCES films(film_id) ON DELETE CASCADE,
+  FOREIGN KEY (similar_film_id) REFERENCES films(film_id) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS film_similarity_score_idx ON film_similarity (film_id, score DESC, similar_film_id);
+
 -- Создание таблицы отзывов
 CREATE TABLE IF NOT EXISTS reviews (
     review_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -76,6 +94,10 @@ CREATE TABLE IF NOT EXISTS reviews (
     FOREIGN KEY (film_id) REFERENCES films (film_id)
 );
 
+-- Индексы под keyset-пагинацию отзывов (useful DESC, review_id)
+CREATE INDEX IF NOT EXISTS reviews_useful_idx ON reviews (useful DESC, review_id);
+CREATE INDEX IF NOT EXISTS reviews_film_useful_idx ON reviews (film_id, useful DESC, review_id);
+
 CREATE TABLE IF NOT EXISTS review_likes (
     review_id INTEGER NOT NULL,
     user_id INTEGER NOT NULL,
@@ -95,6 +117,9 @@ CREATE TABLE IF NOT EXISTS feed (
 	entity_id integer
 );
 
+-- Индекс под чтение ленты пользователя и keyset-пагинацию по event_id
+CREATE INDEX IF NOT EXISTS feed_user_event_idx ON feed (user_id, event_id);
+
 CREATE TABLE IF NOT EXISTS event_type (
 	type_id integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
 	type varchar
@@ -0,0 +1,125 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FilmDbStorageTest {
+
+    private static final AtomicInteger STATEMENTS = new AtomicInteger();
+
+    private final FilmDbStorage filmStorage;
+    private final FilmService filmService;
+    private final ReferenceDataCache referenceData;
+
+    @Test
+    void filmsByDirectorUseConstantNumberOfStatements() {
+        int smallDirector = createDirectorWithFilms(1);
+        int largeDirector = createDirectorWithFilms(50);
+
+        for (String sortBy : List.of("year", "likes")) {
+            int small = countStatements(() -> assertEquals(1,
+                    filmService.getFilmsByDirectorSorted(smallDirector, sortBy).size()));
+            int large = countStatements(() -> assertEquals(50,
+                    filmService.getFilmsByDirectorSorted(largeDirector, sortBy).size()));
+
+            assertEquals(small, large, "Число запросов не должно зависеть от числа фильмов, sortBy=" + sortBy);
+        }
+    }
+
+    private int createDirectorWithFilms(int count) {
+        Director director = filmStorage.createDirector(new Director(0, "Режиссёр " + count));
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName("Фильм " + i);
+            film.setDescription("Описание");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1).plusDays(i));
+            film.setDuration(100);
+            film.setMpa(referenceData.getMpas().get(0));
+            film.setGenres(Set.of(referenceData.getGenres().get(i % referenceData.getGenres().size())));
+            film.setDirectors(Set.of(director));
+            filmStorage.addFilm(film);
+        }
+        return director.getDirectorId();
+    }
+
+    private static int countStatements(Runnable action) {
+        STATEMENTS.set(0);
+        action.run();
+        return STATEMENTS.get();
+    }
+
+    // Оборачивает DataSource и считает созданные JDBC-statement'ы
+    @TestConfiguration
+    static class StatementCountingConfig {
+
+        @Bean
+        static BeanPostProcessor statementCountingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? new CountingDataSource(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    private static class CountingDataSource extends DelegatingDataSource {
+
+        CountingDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return counting(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return counting(super.getConnection(username, password));
+        }
+
+        private static Connection counting(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        if (name.equals("prepareStatement") || name.equals("createStatement")
+                                || name.equals("prepareCall")) {
+                            STATEMENTS.incrementAndGet();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+    }
+}
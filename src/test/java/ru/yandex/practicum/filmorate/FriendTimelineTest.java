@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import ru.yandex.practicum.filmorate.model.Feed;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.enumModels.EventType;
+import ru.yandex.practicum.filmorate.model.enumModels.Operation;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.FriendTimeline;
+import ru.yandex.practicum.filmorate.storage.cache.SocialGraph;
+import ru.yandex.practicum.filmorate.storage.dal.FeedWriter;
+import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
+import ru.yandex.practicum.filmorate.storage.dal.mappers.FeedRowMapper;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class FriendTimelineTest {
+
+    private static final int CAPACITY = 20;
+    private static final int READERS = 8;
+    private static final int EVENTS = 200;
+
+    private final UserDbStorage userStorage;
+    private final UserService userService;
+    private final JdbcTemplate jdbc;
+    private final FeedRowMapper feedMapper;
+    private final SocialGraph socialGraph;
+    private final FriendTimeline friendTimeline;
+    private final FeedWriter feedWriter;
+
+    // Холодная загрузка буферов идёт одновременно с раскладкой новых событий: ни одно не теряется и не задваивается
+    @Test
+    void coldLoadRacingWithPushesMatchesDatabase() throws Exception {
+        FriendTimeline timeline = new FriendTimeline(jdbc, feedMapper, socialGraph, CAPACITY, READERS);
+        int authorId = createUser("author").getId();
+        int[] readerIds = new int[READERS];
+        for (int i = 0; i < READERS; i++) {
+            readerIds[i] = createUser("reader" + i).getId();
+            userService.addFriend(readerIds[i], authorId);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> tasks = new ArrayList<>();
+            tasks.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < EVENTS; i++) {
+                    timeline.onWritten(List.of(writeEvent(authorId)));
+                }
+                return null;
+            }));
+            for (int readerId : readerIds) {
+                tasks.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < EVENTS / 10; i++) {
+                        timeline.getTimeline(readerId, CAPACITY);
+                        Thread.yield();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Integer> expected = latestEventIds(authorId, CAPACITY);
+        for (int readerId : readerIds) {
+            assertTrue(timeline.isBuffered(readerId));
+            assertEquals(expected, eventIds(timeline.getTimeline(readerId, CAPACITY)),
+                    "Лента пользователя " + readerId);
+        }
+    }
+
+    // При заполнении вытесняется буфер, который дольше всех не читали
+    @Test
+    void leastRecentlyReadBufferIsEvicted() {
+        FriendTimeline timeline = new FriendTimeline(jdbc, feedMapper, socialGraph, CAPACITY, 2);
+        int authorId = createUser("evictAuthor").getId();
+        int first = createUser("evict1").getId();
+        int second = createUser("evict2").getId();
+        int third = createUser("evict3").getId();
+        for (int readerId : new int[]{first, second, third}) {
+            userService.addFriend(readerId, authorId);
+        }
+        Feed event = writeEvent(authorId);
+
+        timeline.getTimeline(first, CAPACITY);
+        timeline.getTimeline(second, CAPACITY);
+        timeline.getTimeline(first, CAPACITY);
+        timeline.getTimeline(third, CAPACITY);
+
+        assertTrue(timeline.isBuffered(first));
+        assertFalse(timeline.isBuffered(second));
+        assertTrue(timeline.isBuffered(third));
+        assertEquals(List.of(event.getEventId()), eventIds(timeline.getTimeline(second, CAPACITY)));
+    }
+
+    // Удаление из друзей сбрасывает буфер, и события бывшего друга из ленты пропадают
+    @Test
+    void unfriendInvalidatesBuffer() {
+        int readerId = createUser("unfriendReader").getId();
+        int firstId = createUser("unfriendFirst").getId();
+        int secondId = createUser("unfriendSecond").getId();
+        int otherId = createUser("unfriendOther").getId();
+        userService.addFriend(readerId, firstId);
+        userService.addFriend(readerId, secondId);
+
+        userService.addFriend(firstId, otherId);
+        userService.addFriend(secondId, otherId);
+        feedWriter.flush();
+        assertEquals(2, friendTimeline.getTimeline(readerId, CAPACITY).size());
+        assertTrue(friendTimeline.isBuffered(readerId));
+
+        userService.removeFriend(readerId, firstId);
+        assertFalse(friendTimeline.isBuffered(readerId));
+        List<Feed> timeline = friendTimeline.getTimeline(readerId, CAPACITY);
+        assertEquals(1, timeline.size());
+        assertEquals(secondId, timeline.get(0).getUserId());
+    }
+
+    // Холодное чтение через сервис сначала дописывает очередь ленты: свежие события друзей не теряются
+    @Test
+    void coldReadSeesQueuedEvents() {
+        int readerId = createUser("coldReader").getId();
+        int friendId = createUser("coldFriend").getId();
+        int otherId = createUser("coldOther").getId();
+        userService.addFriend(readerId, friendId);
+        userService.addFriend(friendId, otherId);
+
+        assertFalse(friendTimeline.isWarm(readerId, CAPACITY));
+        List<Feed> timeline = userService.getTimeline(readerId, CAPACITY);
+        assertEquals(1, timeline.size());
+        assertEquals(friendId, timeline.get(0).getUserId());
+        assertTrue(friendTimeline.isWarm(readerId, CAPACITY));
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user);
+    }
+
+    private Feed writeEvent(int userId) {
+        LocalDateTime now = LocalDateTime.now();
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbc.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement("INSERT INTO feed(user_id, entity_id, " +
+                    "event_type_id, operation_id, event_time) VALUES(?, ?, ?, ?, ?)", new String[]{"event_id"});
+            ps.setInt(1, userId);
+            ps.setInt(2, userId);
+            ps.setInt(3, EventType.FRIEND.getId());
+            ps.setInt(4, Operation.ADD.getId());
+            ps.setTimestamp(5, Timestamp.valueOf(now));
+            return ps;
+        }, keyHolder);
+        return new Feed(keyHolder.getKeyAs(Integer.class), EventType.FRIEND, Operation.ADD, userId, userId, now);
+    }
+
+    private List<Integer> latestEventIds(int userId, int limit) {
+        List<Integer> ids = new ArrayList<>(jdbc.queryForList(
+                "SELECT event_id FROM feed WHERE user_id = ? ORDER BY event_id DESC LIMIT ?",
+                Integer.class, userId, limit));
+        ids.sort(null);
+        return ids;
+    }
+
+    private static List<Integer> eventIds(List<Feed> events) {
+        return events.stream().map(Feed::getEventId).toList();
+    }
+}
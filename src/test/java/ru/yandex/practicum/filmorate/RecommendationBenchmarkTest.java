@@ -0,0 +1,115 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.storage.cache.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.cache.UserMinHashIndex;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Сравнение приближённых (MinHash/LSH) рекомендаций с точными: recall@N и средняя задержка.
+// Пользователи синтетические: у каждого «любимый» кластер фильмов, 80% лайков — из него.
+// Долгий и статистический, поэтому не входит в обычный mvn test: mvn test -Dexcluded.groups= -Dgroups=benchmark
+@Tag("benchmark")
+@Slf4j
+@SpringBootTest(properties = "filmorate.recommendations.approximate=true")
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class RecommendationBenchmarkTest {
+
+    private static final int USERS = 2000;
+    private static final int FILMS = 500;
+    private static final int LIKES_PER_USER = 20;
+    private static final int CLUSTERS = 10;
+
+    private final JdbcTemplate jdbc;
+    private final LikeIndex likeIndex;
+    private final UserMinHashIndex minHashIndex;
+    private final RecommendationService recommendationService;
+
+    @Test
+    void approximateRecommendationsKeepRecall() {
+        seedLikes();
+        likeIndex.rebuild();
+        minHashIndex.rebuild();
+
+        double recallSum = 0;
+        long exactNanos = 0;
+        long approximateNanos = 0;
+        int measured = 0;
+        for (int userId = 1; userId <= USERS; userId += 7) {
+            long start = System.nanoTime();
+            List<Integer> exact = recommendationService.recommendExact(userId).orElseThrow();
+            long middle = System.nanoTime();
+            List<Integer> approximate = recommendationService.recommendApproximate(userId).orElseThrow();
+            long end = System.nanoTime();
+
+            exactNanos += middle - start;
+            approximateNanos += end - middle;
+            if (exact.isEmpty()) {
+                continue;
+            }
+            Set<Integer> hits = new HashSet<>(approximate);
+            hits.retainAll(exact);
+            recallSum += (double) hits.size() / exact.size();
+            measured++;
+        }
+
+        double recall = recallSum / measured;
+        log.info("Рекомендации на {} пользователях: recall@N = {}, точный режим {} мкс, приближённый {} мкс",
+                measured, String.format("%.3f", recall), exactNanos / measured / 1000, approximateNanos / measured / 1000);
+        assertTrue(recall >= 0.7, "recall@N приближённого режима слишком низкий: " + recall);
+    }
+
+    private void seedLikes() {
+        jdbc.batchUpdate("INSERT INTO users (user_id, email, login, name, birthday) VALUES (?, ?, ?, ?, ?)",
+                IntStream.rangeClosed(1, USERS).boxed().toList(), 500, (ps, id) -> {
+                    ps.setInt(1, id);
+                    ps.setString(2, "user" + id + "@mail.ru");
+                    ps.setString(3, "user" + id);
+                    ps.setString(4, "user" + id);
+                    ps.setDate(5, Date.valueOf(LocalDate.of(1990, 1, 1)));
+                });
+        jdbc.batchUpdate("INSERT INTO films (film_id, name, description, releaseDate, duration, mpa_id) " +
+                        "VALUES (?, ?, ?, ?, ?, 1)",
+                IntStream.rangeClosed(1, FILMS).boxed().toList(), 500, (ps, id) -> {
+                    ps.setInt(1, id);
+                    ps.setString(2, "Фильм " + id);
+                    ps.setString(3, "Описание");
+                    ps.setDate(4, Date.valueOf(LocalDate.of(2000, 1, 1)));
+                    ps.setInt(5, 100);
+                });
+
+        Random random = new Random(7);
+        int clusterSize = FILMS / CLUSTERS;
+        List<int[]> likes = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            int cluster = random.nextInt(CLUSTERS);
+            Set<Integer> films = new HashSet<>();
+            while (films.size() < LIKES_PER_USER) {
+                films.add(random.nextInt(10) < 8
+                        ? cluster * clusterSize + random.nextInt(clusterSize) + 1
+                        : random.nextInt(FILMS) + 1);
+            }
+            for (int filmId : films) {
+                likes.add(new int[]{userId, filmId});
+            }
+        }
+        jdbc.batchUpdate("INSERT INTO likes (user_id, film_id) VALUES (?, ?)", likes, 1000, (ps, like) -> {
+            ps.setInt(1, like[0]);
+            ps.setInt(2, like[1]);
+        });
+    }
+}
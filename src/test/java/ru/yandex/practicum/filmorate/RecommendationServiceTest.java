@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.RecommendationService;
+import ru.yandex.practicum.filmorate.storage.cache.LikeIndex;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Соседей меньше, чем пользователей, а лимит меньше числа кандидатов — чтобы проверялись отбор и порядок
+@SpringBootTest(properties = {"filmorate.recommendations.neighbours=2", "filmorate.recommendations.limit=3"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class RecommendationServiceTest {
+
+    private static final int USERS = 8;
+    private static final int FILMS = 12;
+
+    private final UserDbStorage userStorage;
+    private final FilmDbStorage filmStorage;
+    private final FilmService filmService;
+    private final ReferenceDataCache referenceData;
+    private final LikeIndex likeIndex;
+    private final RecommendationService recommendationService;
+
+    // Запасной SQL-путь, пока индекс лайков не построен, отвечает так же, как индекс
+    @Test
+    void storageFallbackMatchesIndex() {
+        List<Integer> userIds = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            userIds.add(createUser("recommend" + i).getId());
+        }
+        List<Integer> filmIds = new ArrayList<>();
+        for (int i = 0; i < FILMS; i++) {
+            filmIds.add(createFilm("Рекомендация " + i).getId());
+        }
+        Random random = new Random(11);
+        for (int userId : userIds) {
+            for (int filmId : filmIds) {
+                if (random.nextInt(3) == 0) {
+                    filmService.addLike(filmId, userId);
+                }
+            }
+        }
+        assertTrue(likeIndex.isReady());
+
+        for (int userId : userIds) {
+            assertEquals(recommendationService.recommendExact(userId).orElseThrow(),
+                    recommendationService.recommendFromStorage(userId),
+                    "Рекомендации для пользователя " + userId);
+        }
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user);
+    }
+
+    private Film createFilm(String name) {
+        Film film = new Film();
+        film.setName(name);
+        film.setDescription("Описание");
+        film.setReleaseDate(LocalDate.of(2000, 1, 1));
+        film.setDuration(100);
+        film.setMpa(referenceData.getMpas().get(0));
+        return filmStorage.addFilm(film);
+    }
+}
@@ -0,0 +1,158 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.model.enumModels.StatusFriendship;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.cache.SocialGraph;
+import ru.yandex.practicum.filmorate.storage.dal.FeedWriter;
+import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class UserDbStorageTest {
+
+    private static final int PAIRS = 50;
+
+    private final UserDbStorage userStorage;
+    private final UserService userService;
+    private final JdbcTemplate jdbc;
+    private final FeedWriter feedWriter;
+    private final SocialGraph socialGraph;
+
+    // Встречные заявки одной пары отправляются одновременно: обе строки должны стать подтверждёнными
+    @Test
+    void concurrentMutualRequestsAreBothConfirmed() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < PAIRS; i++) {
+                int first = createUser("first" + i).getId();
+                int second = createUser("second" + i).getId();
+                CyclicBarrier barrier = new CyclicBarrier(2);
+
+                List<Future<?>> requests = new ArrayList<>();
+                requests.add(executor.submit(() -> {
+                    barrier.await();
+                    return userService.addFriend(first, second);
+                }));
+                requests.add(executor.submit(() -> {
+                    barrier.await();
+                    return userService.addFriend(second, first);
+                }));
+                for (Future<?> request : requests) {
+                    request.get();
+                }
+
+                assertEquals(StatusFriendship.CONFIRMED, statusOf(first, second));
+                assertEquals(StatusFriendship.CONFIRMED, statusOf(second, first));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void repeatedRequestDoesNotWriteFeed() {
+        int first = createUser("repeat1").getId();
+        int second = createUser("repeat2").getId();
+
+        assertEquals(StatusFriendship.UNCONFIRMED, userService.addFriend(first, second).getStatus());
+        assertEquals(StatusFriendship.UNCONFIRMED, userService.addFriend(first, second).getStatus());
+        assertEquals(1, feedCount(first));
+
+        assertEquals(StatusFriendship.CONFIRMED, userService.addFriend(second, first).getStatus());
+        assertEquals(StatusFriendship.CONFIRMED, statusOf(first, second));
+    }
+
+    // Удаление несуществующей дружбы не пишет в ленту, а удаление подтверждённой снимает подтверждение встречной
+    @Test
+    void removeFriendWritesFeedOnlyWhenRowDeleted() {
+        int first = createUser("remove1").getId();
+        int second = createUser("remove2").getId();
+        userService.addFriend(first, second);
+        userService.addFriend(second, first);
+
+        userService.removeFriend(first, second);
+        userService.removeFriend(first, second);
+        assertEquals(2, feedCount(first));
+        assertEquals(StatusFriendship.UNCONFIRMED, statusOf(second, first));
+    }
+
+    // Граф дружбы в памяти и запасные SQL-запросы дают одинаковые подсказки и общих друзей,
+    // в том числе после удаления из друзей
+    @Test
+    void socialGraphMatchesSqlFallback() {
+        int[] ids = new int[6];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = createUser("graph" + i).getId();
+        }
+        int[][] friendships = {{0, 1}, {0, 2}, {1, 2}, {1, 3}, {2, 3}, {2, 4}, {3, 4}, {3, 5}, {4, 5}, {5, 0}};
+        for (int[] pair : friendships) {
+            userService.addFriend(ids[pair[0]], ids[pair[1]]);
+        }
+        assertTrue(socialGraph.isReady());
+        assertGraphMatchesSql(ids);
+
+        userService.removeFriend(ids[0], ids[2]);
+        userService.removeFriend(ids[3], ids[4]);
+        assertGraphMatchesSql(ids);
+    }
+
+    private void assertGraphMatchesSql(int[] ids) {
+        for (int userId : ids) {
+            assertEquals(userStorage.getFriendSuggestionIds(userId, 10),
+                    toList(socialGraph.getSuggestions(userId, 10).orElseThrow()),
+                    "Подсказки для пользователя " + userId);
+            for (int otherId : ids) {
+                List<Integer> sql = userStorage.findMutualFriends(userId, otherId).stream()
+                        .map(User::getId)
+                        .toList();
+                assertEquals(sql, toList(socialGraph.getMutualFriends(userId, otherId).orElseThrow()),
+                        "Общие друзья " + userId + " и " + otherId);
+            }
+        }
+    }
+
+    private static List<Integer> toList(int[] ids) {
+        return Arrays.stream(ids).boxed().toList();
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user);
+    }
+
+    private StatusFriendship statusOf(int requesterId, int addresseeId) {
+        Integer statusId = jdbc.queryForObject(
+                "SELECT status_id FROM friends WHERE requester_id = ? AND addressee_id = ?",
+                Integer.class, requesterId, addresseeId);
+        return StatusFriendship.fromId(statusId);
+    }
+
+    private int feedCount(int userId) {
+        feedWriter.flush();
+        return jdbc.queryForObject("SELECT COUNT(*) FROM feed WHERE user_id = ?", Integer.class, userId);
+    }
+}
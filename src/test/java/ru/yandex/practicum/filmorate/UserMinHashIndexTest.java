@@ -0,0 +1,116 @@
+package ru.yandex.practicum.filmorate;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.cache.ReferenceDataCache;
+import ru.yandex.practicum.filmorate.storage.cache.UserMinHashIndex;
+import ru.yandex.practicum.filmorate.storage.dal.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.dal.UserDbStorage;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Пользователи с одинаковыми множествами лайков имеют одинаковые подписи и всегда становятся кандидатами
+// друг друга — независимо от хешей. Без общих фильмов кандидатом можно стать, только если 32-битные хеши
+// совпадут во всех строках полосы, а при фиксированных зёрнах результат одинаков от запуска к запуску
+@SpringBootTest(properties = {"filmorate.recommendations.approximate=true", "filmorate.recommendations.lsh.bands=8"})
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class UserMinHashIndexTest {
+
+    private final UserDbStorage userStorage;
+    private final FilmDbStorage filmStorage;
+    private final FilmService filmService;
+    private final ReferenceDataCache referenceData;
+    private final UserMinHashIndex minHashIndex;
+
+    @Test
+    void usersWithEqualLikesAreCandidates() {
+        int[] films = createFilms("equal", 3);
+        int first = createUser("equal1").getId();
+        int second = createUser("equal2").getId();
+        int stranger = createUser("equalStranger").getId();
+        like(first, films);
+        like(second, films);
+        like(stranger, createFilms("stranger", 3));
+
+        assertTrue(minHashIndex.isReady());
+        assertTrue(minHashIndex.getCandidates(first).contains(second));
+        assertTrue(minHashIndex.getCandidates(second).contains(first));
+        assertFalse(minHashIndex.getCandidates(first).contains(first));
+        assertFalse(minHashIndex.getCandidates(first).contains(stranger));
+    }
+
+    // Снятый лайк убирается из подписи: после него множества совпадают
+    @Test
+    void unlikeRecomputesSignature() {
+        int[] films = createFilms("unlike", 3);
+        int extra = createFilms("unlikeExtra", 1)[0];
+        int first = createUser("unlike1").getId();
+        int second = createUser("unlike2").getId();
+        like(first, films);
+        like(second, films);
+        filmService.addLike(extra, second);
+
+        filmService.removeLike(extra, second);
+        assertTrue(minHashIndex.getCandidates(first).contains(second));
+
+        // Пользователь без лайков убирается из индекса
+        for (int filmId : films) {
+            filmService.removeLike(filmId, second);
+        }
+        assertFalse(minHashIndex.getCandidates(first).contains(second));
+    }
+
+    // Удаление фильма пересчитывает подписи тех, кто его лайкал
+    @Test
+    void filmRemovalRecomputesLikersSignatures() {
+        int[] films = createFilms("removal", 3);
+        int removed = createFilms("removalDeleted", 1)[0];
+        int first = createUser("removal1").getId();
+        int second = createUser("removal2").getId();
+        like(first, films);
+        like(second, films);
+        filmService.addLike(removed, second);
+
+        filmService.deleteFilm(removed);
+        assertTrue(minHashIndex.getCandidates(first).contains(second));
+    }
+
+    private void like(int userId, int[] filmIds) {
+        for (int filmId : filmIds) {
+            filmService.addLike(filmId, userId);
+        }
+    }
+
+    private User createUser(String login) {
+        User user = new User();
+        user.setEmail(login + "@mail.ru");
+        user.setLogin(login);
+        user.setName(login);
+        user.setBirthday(LocalDate.of(1990, 1, 1));
+        return userStorage.addUser(user);
+    }
+
+    private int[] createFilms(String name, int count) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            Film film = new Film();
+            film.setName(name + " " + i);
+            film.setDescription("Описание");
+            film.setReleaseDate(LocalDate.of(2000, 1, 1));
+            film.setDuration(100);
+            film.setMpa(referenceData.getMpas().get(0));
+            ids[i] = filmStorage.addFilm(film).getId();
+        }
+        return ids;
+    }
+}